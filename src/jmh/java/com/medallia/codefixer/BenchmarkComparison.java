@@ -0,0 +1,97 @@
+package com.medallia.codefixer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Compares the results of a JMH run with the baseline, both as written by JMH with "-rf json".
+ * <br/>
+ * Usage: BenchmarkComparison baseline.json results.json [threshold%]
+ * <br/>
+ * A benchmark regressed when it is worse than the baseline by more than the threshold (10% by default) and by more
+ * than the error of both measures. The program ends with status 1 if any benchmark regressed. The benchmarks that are
+ * not in the baseline (they cannot regress until it is measured again) and the ones of the baseline that were not run
+ * are listed too.
+ */
+public class BenchmarkComparison {
+
+	public static void main(String[] args) throws IOException {
+		Map<String, JsonObject> baseline = read(args[0]);
+		Map<String, JsonObject> results = read(args[1]);
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.1;
+
+		int regressions = 0;
+		int missing = 0;
+
+		for (Map.Entry<String, JsonObject> result : results.entrySet()) {
+			JsonObject base = baseline.get(result.getKey());
+			JsonObject metric = result.getValue().getAsJsonObject("primaryMetric");
+
+			if (base == null) {
+				System.out.println(String.format("%-90s %12.3f %-8s  MISSING FROM THE BASELINE", result.getKey(), metric.get("score").getAsDouble(), metric.get("scoreUnit").getAsString()));
+				missing++;
+				continue;
+			}
+
+			JsonObject baseMetric = base.getAsJsonObject("primaryMetric");
+			double score = metric.get("score").getAsDouble();
+			double baseScore = baseMetric.get("score").getAsDouble();
+			// Higher is better for the throughput, lower for the times
+			boolean higherIsBetter = result.getValue().get("mode").getAsString().equals("thrpt");
+			double change = (score - baseScore) / baseScore;
+			double worsening = higherIsBetter ? -change : change;
+			double error = errorOf(metric) + errorOf(baseMetric);
+
+			boolean regressed = worsening > threshold && Math.abs(score - baseScore) > error;
+			if (regressed)
+				regressions++;
+
+			System.out.println(String.format("%-90s %12.3f -> %12.3f %-8s %+7.1f%%%s", result.getKey(), baseScore, score,
+				metric.get("scoreUnit").getAsString(), change * 100, regressed ? "  REGRESSION" : ""));
+		}
+
+		for (String benchmark : Sets.difference(baseline.keySet(), results.keySet()))
+			System.out.println(String.format("%-90s  NOT RUN", benchmark));
+
+		System.out.println(String.format("%s benchmarks compared, %s regressions, %s missing from the baseline", results.size() - missing, regressions, missing));
+
+		if (regressions > 0)
+			System.exit(1);
+	}
+
+	private static double errorOf(JsonObject metric) {
+		JsonElement error = metric.get("scoreError");
+		// JMH writes "NaN" when there are not enough iterations to compute the error
+		return error == null || !error.getAsJsonPrimitive().isNumber() ? 0 : error.getAsDouble();
+	}
+
+	/**
+	 * @return the results in the file by the benchmark name and its parameters
+	 */
+	private static Map<String, JsonObject> read(String file) throws IOException {
+		Map<String, JsonObject> results = Maps.newTreeMap();
+
+		try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+			for (JsonElement element : new JsonParser().parse(reader).getAsJsonArray()) {
+				JsonObject result = element.getAsJsonObject();
+				String key = result.get("benchmark").getAsString();
+				if (result.has("params"))
+					key += " " + result.get("params");
+
+				results.put(key, result);
+			}
+		}
+
+		return results;
+	}
+}
@@ -0,0 +1,63 @@
+package com.medallia.codefixer;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the candidates checked per second for the sample, end to end: choosing the options and running the tests
+ * of the meta-program with them (without coverage, so every test runs for every candidate).
+ * <br/>
+ * The meta-program is generated from src/samples/prototype and compiled in memory (see {@link InMemoryFixer}), so it
+ * must run from the project directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CandidateThroughputBenchmark {
+	private CandidateExecutor runner;
+	private SearchStrategy strategy;
+	private Iterator<int[]> candidates;
+
+	@Setup
+	public void setUp() throws Exception {
+		Map<String, byte[]> classes = InMemoryFixer.compileMetaProgram("src/samples/prototype", "src/test/java", new RunMetrics());
+		CandidateRunner candidateRunner = CandidateRunner.isolated(InMemoryFixer.programLoaders(classes), CodeFixer.PROGRAM_CLASS, CodeFixer.TEST_CLASS.getName(), false);
+		candidateRunner.setTimeout(1_000);
+		candidateRunner.setFailFast(true);
+
+		List<Integer> sizes = candidateRunner.getSelectors().stream().map(SelectorControl::getOptionCount).collect(Collectors.toList());
+		strategy = new ExhaustiveSearch(sizes);
+		runner = candidateRunner;
+		candidates = strategy.iterator();
+	}
+
+	@Benchmark
+	public CandidateResult checkCandidate() {
+		if (!candidates.hasNext())
+			candidates = strategy.iterator();
+
+		CandidateResult result = runner.run(candidates.next());
+
+		if (runner.isBroken())
+			runner = runner.replacement();
+
+		return result;
+	}
+}
@@ -0,0 +1,49 @@
+package com.medallia.codefixer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how fast the search strategies produce the option vectors (the permutations of the selectors), for the
+ * selectors of the sample meta-program. Each operation is a whole search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+	/** The number of variants of the selectors of the sample */
+	private static final List<Integer> SIZES = ImmutableList.of(2, 2, 6, 2, 6, 2, 2, 2, 2, 2, 2);
+
+	@Param({"exhaustive", "single-first", "pairwise"})
+	public String strategyName;
+
+	private SearchStrategy strategy;
+
+	@Setup
+	public void setUp() {
+		strategy = SearchStrategy.named(strategyName, SIZES, 0);
+	}
+
+	@Benchmark
+	public void iterate(Blackhole blackhole) {
+		for (int[] options : strategy)
+			blackhole.consume(options);
+	}
+}
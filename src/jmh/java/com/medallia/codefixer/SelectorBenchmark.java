@@ -0,0 +1,82 @@
+package com.medallia.codefixer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the checks the meta-program does in its hot spots, in a tight loop as in the loop conditions of the
+ * samples. Each operation is one check.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectorBenchmark {
+	private static final int CHECKS = 1_000;
+
+	private Selector selector;
+
+	@Setup
+	public void setUp() {
+		// Not registered with Selector.of, so the benchmark does not add a selector to the meta-program ones
+		selector = new Selector(1, new String[] {"LE", "EQ", "NE", "LT", "GT", "GE"});
+		selector.choose(3);
+	}
+
+	/** The chain of variants emitted by default: {@code (_s1.is(0) && a <= b) || (_s1.is(1) && a == b) || ...} */
+	@Benchmark
+	@OperationsPerInvocation(CHECKS)
+	public int isByIndex() {
+		int count = 0;
+
+		for (int i = 0; i < CHECKS; i++) {
+			if ((selector.is(0) && i <= CHECKS / 2) || (selector.is(1) && i == CHECKS / 2) || (selector.is(2) && i != CHECKS / 2)
+				|| (selector.is(3) && i < CHECKS / 2) || (selector.is(4) && i > CHECKS / 2) || (selector.is(5) && i >= CHECKS / 2))
+				count++;
+		}
+
+		return count;
+	}
+
+	/** The same chain checking the variants by name, as the meta-programs generated before the checks by index */
+	@Benchmark
+	@OperationsPerInvocation(CHECKS)
+	public int isByName() {
+		int count = 0;
+
+		for (int i = 0; i < CHECKS; i++) {
+			if ((selector.is("LE") && i <= CHECKS / 2) || (selector.is("EQ") && i == CHECKS / 2) || (selector.is("NE") && i != CHECKS / 2)
+				|| (selector.is("LT") && i < CHECKS / 2) || (selector.is("GT") && i > CHECKS / 2) || (selector.is("GE") && i >= CHECKS / 2))
+				count++;
+		}
+
+		return count;
+	}
+
+	/** The check emitted in dispatch mode: {@code _s1.compare(a, b)} */
+	@Benchmark
+	@OperationsPerInvocation(CHECKS)
+	public int compare() {
+		int count = 0;
+
+		for (int i = 0; i < CHECKS; i++) {
+			if (selector.compare(i, CHECKS / 2))
+				count++;
+		}
+
+		return count;
+	}
+}
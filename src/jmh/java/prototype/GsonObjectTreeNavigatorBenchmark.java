@@ -0,0 +1,170 @@
+package prototype;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the original {@link GsonObjectTreeNavigator} (the sample, not its meta-program) on a document with an array
+ * of records, as the survey responses the navigator is used for: each record has a few fields, a nested object and
+ * an array of answers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GsonObjectTreeNavigatorBenchmark {
+	/** The number of records in the document */
+	@Param({"10", "1000", "100000"})
+	public int records;
+
+	private ObjectTreeNavigator navigator;
+	private String deepPath;
+	private String bracketPath;
+	private String recordPath;
+	private CompiledPath compiledDeepPath;
+	/** The fields read from a record, one by one and as a batch */
+	private List<String> recordFields;
+	private PathBatch recordBatch;
+
+	@Setup
+	public void setUp() {
+		JsonArray array = new JsonArray();
+		for (int i = 0; i < records; i++)
+			array.add(record(i));
+
+		JsonObject document = new JsonObject();
+		document.addProperty("survey", "benchmark");
+		document.add("records", array);
+
+		navigator = new GsonObjectTreeNavigator(document);
+		deepPath = "records." + (records / 2) + ".customer.address.city";
+		bracketPath = "records[" + (records / 2) + "].answers[3].score";
+		recordPath = "records." + (records / 2);
+		compiledDeepPath = CompiledPath.compile(deepPath);
+		recordFields = Arrays.asList("id", "completed", "nps", "comment", "customer.name", "customer.email",
+			"customer.address.street", "customer.address.city", "customer.address.zip", "answers[0].score", "answers[1].score", "answers[2].score");
+		recordBatch = PathBatch.of(recordFields);
+	}
+
+	private static JsonObject record(int id) {
+		JsonObject address = new JsonObject();
+		address.addProperty("street", "Street " + id);
+		address.addProperty("city", "City " + id % 100);
+		address.addProperty("zip", String.valueOf(10_000 + id));
+
+		JsonObject customer = new JsonObject();
+		customer.addProperty("name", "Customer " + id);
+		customer.addProperty("email", "customer" + id + "@example.com");
+		customer.add("address", address);
+
+		JsonArray answers = new JsonArray();
+		for (int question = 0; question < 10; question++) {
+			JsonObject answer = new JsonObject();
+			answer.addProperty("question", "q" + question);
+			answer.addProperty("score", (id + question) % 11);
+			answers.add(answer);
+		}
+
+		JsonObject record = new JsonObject();
+		record.addProperty("id", id);
+		record.addProperty("completed", id % 3 != 0);
+		record.addProperty("nps", id % 11);
+		record.addProperty("comment", "Comment of the record " + id);
+		record.add("customer", customer);
+		record.add("answers", answers);
+		return record;
+	}
+
+	/** Follows a dotted path (through getJsonElement) */
+	@Benchmark
+	public String getJsonElementDotted() {
+		return navigator.getString(deepPath);
+	}
+
+	/** Follows a path with array indexes in brackets (through getJsonElement) */
+	@Benchmark
+	public int getJsonElementBrackets() {
+		return navigator.getInt(bracketPath);
+	}
+
+	/** Follows the dotted path compiled once by the caller */
+	@Benchmark
+	public String getJsonElementCompiled() {
+		return navigator.getString(compiledDeepPath);
+	}
+
+	/** Reads several fields of a record following each path from the root */
+	@Benchmark
+	public void getRecordFieldsOneByOne(Blackhole blackhole) {
+		ObjectTreeNavigator record = navigator.getNavigator(recordPath);
+		for (String field : recordFields)
+			blackhole.consume(record.getString(field));
+	}
+
+	/** Reads the same fields of a record as a batch, visiting their common elements once */
+	@Benchmark
+	public void getRecordFieldsBatch(Blackhole blackhole) {
+		PathBatch.Values values = navigator.getNavigator(recordPath).getValues(recordBatch);
+		for (int field = 0; field < values.size(); field++)
+			blackhole.consume(values.getString(field));
+	}
+
+	@Benchmark
+	public void getFieldsForObject(Blackhole blackhole) {
+		for (Map.Entry<String, ObjectTreeNavigator> field : navigator.getFieldsForObject(recordPath).entrySet())
+			blackhole.consume(field.getValue().isPrimitive());
+	}
+
+	/** Iterates the whole array of records, reading a field of each one */
+	@Benchmark
+	public int getIterable() {
+		int total = 0;
+
+		for (ObjectTreeNavigator record : navigator.getIterable("records"))
+			total += record.getInt("nps");
+
+		return total;
+	}
+
+	/** Iterates the whole array of records with a cursor, reading a field of each one */
+	@Benchmark
+	public int getCursor() {
+		int total = 0;
+
+		for (ObjectTreeNavigator record : navigator.getCursor("records"))
+			total += record.getInt("nps");
+
+		return total;
+	}
+
+	/** Sums a field of each record with a sequential stream */
+	@Benchmark
+	public int getStream() {
+		return navigator.getStream("records").mapToInt(record -> record.getInt("nps")).sum();
+	}
+
+	/** Sums a field of each record with a parallel stream, the array is split among the threads of the common pool */
+	@Benchmark
+	public int getParallelStream() {
+		return navigator.getStream("records").parallel().mapToInt(record -> record.getInt("nps")).sum();
+	}
+}
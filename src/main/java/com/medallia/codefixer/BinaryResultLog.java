@@ -0,0 +1,174 @@
+package com.medallia.codefixer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Writes the results to a compact binary file, a few bytes per candidate, to keep the results of very large searches.
+ * <br/>
+ * The file starts with a header (a magic number and the variants of each selector) followed by a record per result:
+ * the options, the run, failure and executed counts, the run time, the time out flag and the selector hits, the
+ * numbers as variable length integers (7 bits per byte). The names of the options are taken from the header.
+ * A truncated last record, from a run that crashed, is ignored.
+ */
+public class BinaryResultLog implements ResultSink {
+	private static final int MAGIC = 0x43465231; // "CFR1"
+
+	private final File file;
+	private final DataOutputStream out;
+
+	/**
+	 * @param variants the names of the variants of each selector, in the order of the option vectors
+	 */
+	public BinaryResultLog(File file, List<List<String>> variants) throws IOException {
+		this.file = file;
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+		writeVariants(out, variants);
+	}
+
+	@Override public synchronized void accept(CandidateResult result) {
+		try {
+			writeResult(out, result);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the results to " + file, e);
+		}
+	}
+
+	@Override public synchronized void close() throws IOException {
+		out.close();
+	}
+
+	/** @return true if the file was written by a {@link BinaryResultLog} */
+	public static boolean isLog(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			return in.readInt() == MAGIC;
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the results one at a time, without loading the whole file
+	 * @param consumer receives each result
+	 */
+	public static void read(File file, Consumer<CandidateResult> consumer) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " is not a binary result log");
+
+			List<String[]> variants = readVariants(in);
+
+			while (true) {
+				CandidateResult result;
+				try {
+					result = readResult(in, variants);
+				} catch (EOFException e) {
+					return;
+				}
+				consumer.accept(result);
+			}
+		}
+	}
+
+	/** Writes the number of selectors and the names of the variants of each one */
+	static void writeVariants(DataOutput out, List<List<String>> variants) throws IOException {
+		writeNumber(out, variants.size());
+		for (List<String> selectorVariants : variants) {
+			writeNumber(out, selectorVariants.size());
+			for (String variant : selectorVariants)
+				out.writeUTF(variant);
+		}
+	}
+
+	/** @return the names of the variants of each selector, as written by {@link #writeVariants} */
+	static List<String[]> readVariants(DataInput in) throws IOException {
+		List<String[]> variants = Lists.newArrayList();
+		for (int selectors = (int) readNumber(in), i = 0; i < selectors; i++) {
+			String[] selectorVariants = new String[(int) readNumber(in)];
+			for (int j = 0; j < selectorVariants.length; j++)
+				selectorVariants[j] = in.readUTF();
+			variants.add(selectorVariants);
+		}
+
+		return variants;
+	}
+
+	/** Writes the record of a result, starting with its options */
+	static void writeResult(DataOutput out, CandidateResult result) throws IOException {
+		for (int option : result.getOptions())
+			writeNumber(out, option);
+		writeNumber(out, result.getRunCount());
+		writeNumber(out, result.getFailureCount());
+		writeNumber(out, result.getExecutedCount());
+		writeNumber(out, result.getRunTime());
+		out.writeBoolean(result.isTimedOut());
+		writeNumber(out, result.getSelectorHits().length);
+		for (long hits : result.getSelectorHits())
+			writeNumber(out, hits);
+	}
+
+	/**
+	 * @param variants the names of the variants of each selector, to name the options
+	 * @return the result of a record written by {@link #writeResult}
+	 */
+	static CandidateResult readResult(DataInput in, List<String[]> variants) throws IOException {
+		int[] options = new int[variants.size()];
+		String[] namedOptions = new String[options.length];
+		for (int i = 0; i < options.length; i++) {
+			options[i] = (int) readNumber(in);
+			namedOptions[i] = variants.get(i)[options[i]];
+		}
+
+		int runCount = (int) readNumber(in);
+		int failureCount = (int) readNumber(in);
+		int executedCount = (int) readNumber(in);
+		long runTime = readNumber(in);
+		boolean timedOut = in.readBoolean();
+
+		long[] selectorHits = new long[(int) readNumber(in)];
+		for (int i = 0; i < selectorHits.length; i++)
+			selectorHits[i] = readNumber(in);
+
+		return new CandidateResult(options, namedOptions, runCount, failureCount, runTime, timedOut, executedCount, selectorHits);
+	}
+
+	/** Writes a non negative number using 7 bits per byte, the high bit set in all the bytes but the last */
+	static void writeNumber(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readNumber(DataInput in) throws IOException {
+		long value = 0;
+
+		for (int shift = 0; ; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+	}
+}
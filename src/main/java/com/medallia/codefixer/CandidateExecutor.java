@@ -0,0 +1,19 @@
+package com.medallia.codefixer;
+
+/**
+ * Runs the tests against the meta-program with the option vectors it is given
+ */
+public interface CandidateExecutor {
+
+	/**
+	 * @param options the option to choose for each selector
+	 * @return the result of the test run
+	 */
+	CandidateResult run(int[] options);
+
+	/** @return true if a candidate could not be stopped, the executor cannot be used anymore */
+	boolean isBroken();
+
+	/** @return a new executor for the same meta-program and with the same settings, to be used instead of a broken one */
+	CandidateExecutor replacement();
+}
@@ -0,0 +1,136 @@
+package com.medallia.codefixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+
+/**
+ * The outcome of running the tests against the meta-program with a given option vector.
+ * <br/>
+ * The results can be written to a file (one per line, tab separated, see {@link ResultSink#tsv}), to merge the
+ * results of a search split among several processes.
+ */
+public class CandidateResult {
+	private static final Splitter FIELD_SPLITTER = Splitter.on('\t');
+	private static final Splitter OPTION_SPLITTER = Splitter.on(',').omitEmptyStrings();
+
+	private final int[] options;
+	private final String[] namedOptions;
+	private final int runCount;
+	private final int failureCount;
+	private final long runTime;
+	private final boolean timedOut;
+	private final int executedCount;
+	private final long[] selectorHits;
+
+	public CandidateResult(int[] options, String[] namedOptions, int runCount, int failureCount, long runTime, boolean timedOut) {
+		this(options, namedOptions, runCount, failureCount, runTime, timedOut, runCount);
+	}
+
+	public CandidateResult(int[] options, String[] namedOptions, int runCount, int failureCount, long runTime, boolean timedOut, int executedCount) {
+		this(options, namedOptions, runCount, failureCount, runTime, timedOut, executedCount, new long[0]);
+	}
+
+	/**
+	 * @param selectorHits the number of times the tests checked each selector, empty if it is not known
+	 */
+	public CandidateResult(int[] options, String[] namedOptions, int runCount, int failureCount, long runTime, boolean timedOut, int executedCount,
+			long[] selectorHits) {
+		this.options = options;
+		this.namedOptions = namedOptions;
+		this.runCount = runCount;
+		this.failureCount = failureCount;
+		this.runTime = runTime;
+		this.timedOut = timedOut;
+		this.executedCount = executedCount;
+		this.selectorHits = selectorHits;
+	}
+
+	/** @return a copy of this result with the number of times the tests checked each selector */
+	public CandidateResult withSelectorHits(long[] selectorHits) {
+		return new CandidateResult(options, namedOptions, runCount, failureCount, runTime, timedOut, executedCount, selectorHits);
+	}
+
+	public int[] getOptions() {
+		return options;
+	}
+
+	public String[] getNamedOptions() {
+		return namedOptions;
+	}
+
+	public int getRunCount() {
+		return runCount;
+	}
+
+	public int getFailureCount() {
+		return failureCount;
+	}
+
+	/** @return the time spent running the tests in ms */
+	public long getRunTime() {
+		return runTime;
+	}
+
+	/** @return the number of tests that were actually run, the outcome of the others was known from previous candidates */
+	public int getExecutedCount() {
+		return executedCount;
+	}
+
+	/**
+	 * @return the number of times the tests checked each selector, empty if it is not known (for the candidates
+	 * resolved from the coverage of previous ones or lost with their worker)
+	 */
+	public long[] getSelectorHits() {
+		return selectorHits;
+	}
+
+	/** @return true if the candidate was aborted because it exceeded its time */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	public boolean wasSuccessful() {
+		return failureCount == 0 && !timedOut;
+	}
+
+	@Override public String toString() {
+		return Arrays.toString(options) + " / " + Arrays.toString(namedOptions);
+	}
+
+	/**
+	 * Reads the results written by {@link ResultSink#tsv} one at a time, without loading the whole file
+	 * @param consumer receives each result
+	 */
+	public static void read(File resultsFile, Consumer<CandidateResult> consumer) throws IOException {
+		try (Stream<String> lines = Files.lines(resultsFile.toPath(), StandardCharsets.UTF_8)) {
+			lines.filter(line -> !line.isEmpty()).map(CandidateResult::parse).forEach(consumer);
+		}
+	}
+
+	static CandidateResult parse(String text) {
+		List<String> fields = FIELD_SPLITTER.splitToList(text);
+
+		int[] options = OPTION_SPLITTER.splitToList(fields.get(0)).stream().mapToInt(Integer::parseInt).toArray();
+		String[] namedOptions = OPTION_SPLITTER.splitToList(fields.get(1)).toArray(new String[0]);
+
+		return new CandidateResult(options, namedOptions, Integer.parseInt(fields.get(2)), Integer.parseInt(fields.get(3)),
+			Long.parseLong(fields.get(4)), Boolean.parseBoolean(fields.get(5)), Integer.parseInt(fields.get(6)),
+			fields.size() > 7 ? OPTION_SPLITTER.splitToList(fields.get(7)).stream().mapToLong(Long::parseLong).toArray() : new long[0]);
+	}
+
+	String format() {
+		return Joiner.on('\t').join(Ints.join(",", options), Joiner.on(',').join(namedOptions), runCount, failureCount,
+			runTime, timedOut, executedCount, Longs.join(",", selectorHits));
+	}
+}
@@ -0,0 +1,86 @@
+package com.medallia.codefixer;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+
+/**
+ * The space of all the option vectors, addressed by a single index.
+ * <br/>
+ * The option vectors are numbered in mixed radix (the radix of each digit is the number of variants of its selector,
+ * the last selector is the least significant digit), so an index can be decoded into its option vector without
+ * enumerating the previous ones. This allows to split the space in ranges, to sample it, or to resume a search.
+ */
+public class CandidateSpace {
+	private final int[] sizes;
+	private final long[] strides;
+	private final long size;
+
+	/**
+	 * @param sizes the number of variants for each selector
+	 * @throws IllegalArgumentException if there are more than {@link Long#MAX_VALUE} option vectors
+	 */
+	public CandidateSpace(List<Integer> sizes) {
+		this.sizes = Ints.toArray(sizes);
+		this.strides = new long[this.sizes.length];
+
+		long stride = 1;
+		try {
+			for (int i = this.sizes.length - 1; i >= 0; i--) {
+				strides[i] = stride;
+				stride = Math.multiplyExact(stride, this.sizes[i]);
+			}
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("There are too many candidates to index them, reduce the hot spots (see localizeFaults)", e);
+		}
+		this.size = stride;
+	}
+
+	/**
+	 * @param sizes the number of variants for each selector
+	 * @return the number of option vectors, or {@link Long#MAX_VALUE} if there are more (the space cannot be built)
+	 */
+	public static long count(List<Integer> sizes) {
+		long count = 1;
+		for (int size : sizes)
+			count = size == 0 ? 0 : (count > Long.MAX_VALUE / size ? Long.MAX_VALUE : count * size);
+
+		return count;
+	}
+
+	/** @return the number of option vectors */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @param index the index of the option vector, from 0 to {@link #size()} - 1
+	 * @return the option vector
+	 */
+	public int[] decode(long index) {
+		Preconditions.checkArgument(index >= 0 && index < size, "Index %s out of range (%s)", index, size);
+
+		int[] options = new int[sizes.length];
+
+		for (int i = 0; i < sizes.length; i++)
+			options[i] = (int) (index / strides[i] % sizes[i]);
+
+		return options;
+	}
+
+	/**
+	 * @param options an option vector
+	 * @return its index
+	 */
+	public long encode(int[] options) {
+		Preconditions.checkArgument(options.length == sizes.length, "Expected %s options", sizes.length);
+
+		long index = 0;
+
+		for (int i = 0; i < sizes.length; i++)
+			index += options[i] * strides[i];
+
+		return index;
+	}
+}
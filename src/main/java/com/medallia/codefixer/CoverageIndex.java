@@ -0,0 +1,97 @@
+package com.medallia.codefixer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Remembers the outcome of each test together with the hot spots it reached.
+ * <br/>
+ * A test only sees the choices of the selectors it reaches, so it has the same outcome for any option vector with the
+ * same choices in those selectors, no matter what is chosen in the selectors it does not reach. This allows to skip
+ * the tests (and whole candidates) that differ only in hot spots that are not executed.
+ * <br/>
+ * It can be shared by several workers.
+ */
+public class CoverageIndex implements CoverageRecorder {
+	private final Map<String, List<Coverage>> coveragesByTest = Maps.newHashMap();
+
+	/**
+	 * @param test the test name
+	 * @param options the option vector of the candidate
+	 * @return {@code TRUE} or {@code FALSE} if it is known whether the test passes with these options, {@code null} if it has to be run
+	 */
+	public synchronized Boolean knownOutcome(String test, int[] options) {
+		List<Coverage> coverages = coveragesByTest.get(test);
+
+		if (coverages != null) {
+			for (Coverage coverage : coverages) {
+				Boolean passed = coverage.outcomes.get(coverage.project(options));
+				if (passed != null)
+					return passed;
+			}
+		}
+
+		return null;
+	}
+
+	@Override public synchronized void record(String test, int[] reached, int[] options, boolean passed) {
+		List<Coverage> coverages = coveragesByTest.computeIfAbsent(test, t -> Lists.newArrayList());
+
+		Coverage coverage = null;
+		for (Coverage candidate : coverages) {
+			if (Arrays.equals(candidate.reached, reached)) {
+				coverage = candidate;
+				break;
+			}
+		}
+
+		if (coverage == null) {
+			coverage = new Coverage(reached);
+			coverages.add(coverage);
+		}
+
+		coverage.outcomes.put(coverage.project(options), passed);
+	}
+
+	/** The outcomes of a test for a given set of reached selectors, by the choices in those selectors */
+	private static class Coverage {
+		final int[] reached;
+		final Map<Projection, Boolean> outcomes = Maps.newHashMap();
+
+		Coverage(int[] reached) {
+			this.reached = reached;
+		}
+
+		Projection project(int[] options) {
+			int[] choices = new int[reached.length];
+
+			for (int i = 0; i < reached.length; i++)
+				choices[i] = options[reached[i]];
+
+			return new Projection(choices);
+		}
+	}
+
+	/** The choices of an option vector in the reached selectors */
+	private static final class Projection {
+		final int[] choices;
+		final int hash;
+
+		Projection(int[] choices) {
+			this.choices = choices;
+			this.hash = Arrays.hashCode(choices);
+		}
+
+		@Override public boolean equals(Object o) {
+			return o instanceof Projection && Arrays.equals(choices, ((Projection) o).choices);
+		}
+
+		@Override public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package com.medallia.codefixer;
+
+/**
+ * Receives the selectors reached by each test run and its outcome
+ */
+public interface CoverageRecorder {
+	/**
+	 * @param test the test name
+	 * @param reached the indexes of the selectors the test reached, in increasing order
+	 * @param options the option vector the test was run with
+	 * @param passed whether the test passed
+	 */
+	void record(String test, int[] reached, int[] options, boolean passed);
+}
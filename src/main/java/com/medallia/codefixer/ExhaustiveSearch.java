@@ -0,0 +1,58 @@
+package com.medallia.codefixer;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Checks all the combinations of the selectors' variants (the cartesian product), starting with the original program.
+ * <br/>
+ * It can be limited to a range of the {@link CandidateSpace}, to split a search among several processes.
+ */
+public class ExhaustiveSearch implements SearchStrategy {
+	private final CandidateSpace space;
+	private final long from;
+	private final long to;
+
+	/**
+	 * @param sizes the number of elements in each range (from 0 to size - 1)
+	 */
+	public ExhaustiveSearch(List<Integer> sizes) {
+		this(new CandidateSpace(sizes), 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param space the candidates to check
+	 * @param from the index of the first candidate to check
+	 * @param to the index after the last candidate to check, it is limited to the size of the space
+	 */
+	public ExhaustiveSearch(CandidateSpace space, long from, long to) {
+		Preconditions.checkArgument(0 <= from && from <= to, "Invalid range [%s, %s)", from, to);
+		this.space = space;
+		this.from = Math.min(from, space.size());
+		this.to = Math.min(to, space.size());
+	}
+
+	/**
+	 * Computes an iterator though the option vectors in the range, in index order
+	 * @return an Iterator
+	 */
+	@Override public Iterator<int[]> iterator() {
+		return new Iterator<int[]>() {
+			long next = from;
+
+			@Override public boolean hasNext() {
+				return next < to;
+			}
+
+			@Override public int[] next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				return space.decode(next++);
+			}
+		};
+	}
+}
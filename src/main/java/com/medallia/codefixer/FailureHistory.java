@@ -0,0 +1,40 @@
+package com.medallia.codefixer;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Counts how many times each test failed for the candidates checked so far.
+ * <br/>
+ * Running first the tests that fail more often finds the failing candidates sooner when the tests stop at the first
+ * failure. It can be shared by several workers.
+ */
+public class FailureHistory {
+	private final ConcurrentMap<String, AtomicInteger> failures = Maps.newConcurrentMap();
+
+	/** @param test the name of the test that failed */
+	public void recordFailure(String test) {
+		failures.computeIfAbsent(test, t -> new AtomicInteger()).incrementAndGet();
+	}
+
+	/** @return how many times the test failed */
+	public int getFailures(String test) {
+		AtomicInteger count = failures.get(test);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * @return a comparator that puts first the tests that failed more times. It uses the counts at the moment of the
+	 * call, so it is consistent even if other workers keep recording failures.
+	 */
+	public Comparator<String> mostFailedFirst() {
+		Map<String, Integer> snapshot = Maps.newHashMap();
+		failures.forEach((test, count) -> snapshot.put(test, count.get()));
+
+		return Comparator.comparing((String test) -> snapshot.getOrDefault(test, 0)).reversed();
+	}
+}
@@ -0,0 +1,98 @@
+package com.medallia.codefixer;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+
+/**
+ * A randomized search guided by the results: most candidates are neighbors (one or two selectors changed) of the
+ * best candidate found so far (the one with less failures), the rest are random option vectors.
+ * <br/>
+ * It starts with the original program and never checks the same option vector twice. It ends when all the space was
+ * checked or when it cannot find new option vectors after many attempts.
+ */
+public class GuidedSearch implements SearchStrategy {
+	private static final double NEIGHBOR_PROBABILITY = 0.8;
+	private static final int MAX_ATTEMPTS = 10_000;
+
+	private final int[] sizes;
+	private final long total;
+	private final Random random;
+
+	private int[] best;
+	private int bestFailures = Integer.MAX_VALUE;
+
+	/**
+	 * @param sizes the number of variants for each selector
+	 * @param seed the seed for the random choices, the same seed (and results) produces the same candidates
+	 */
+	public GuidedSearch(List<Integer> sizes, long seed) {
+		this.sizes = Ints.toArray(sizes);
+		this.random = new Random(seed);
+		this.best = new int[this.sizes.length];
+
+		long product = 1;
+		for (int size : this.sizes)
+			product = product > Long.MAX_VALUE / size ? Long.MAX_VALUE : product * size;
+		this.total = product;
+	}
+
+	@Override public synchronized void onResult(CandidateResult result) {
+		if (!result.isTimedOut() && result.getFailureCount() < bestFailures) {
+			best = result.getOptions();
+			bestFailures = result.getFailureCount();
+		}
+	}
+
+	@Override public Iterator<int[]> iterator() {
+		return new AbstractIterator<int[]>() {
+			final Set<List<Integer>> checked = Sets.newHashSet();
+
+			@Override protected int[] computeNext() {
+				if (checked.isEmpty())
+					return check(new int[sizes.length]);
+
+				for (int attempt = 0; attempt < MAX_ATTEMPTS && checked.size() < total; attempt++) {
+					int[] options = random.nextDouble() < NEIGHBOR_PROBABILITY ? neighbor() : randomOptions();
+
+					if (!checked.contains(Ints.asList(options)))
+						return check(options);
+				}
+
+				return endOfData();
+			}
+
+			private int[] check(int[] options) {
+				checked.add(Ints.asList(options));
+				return options;
+			}
+		};
+	}
+
+	private synchronized int[] neighbor() {
+		int[] options = best.clone();
+		int changes = 1 + random.nextInt(2);
+
+		for (int i = 0; i < changes; i++) {
+			int position = random.nextInt(sizes.length);
+			if (sizes[position] > 1)
+				options[position] = (options[position] + 1 + random.nextInt(sizes[position] - 1)) % sizes[position];
+		}
+
+		return options;
+	}
+
+	private synchronized int[] randomOptions() {
+		int[] options = new int[sizes.length];
+
+		for (int i = 0; i < sizes.length; i++)
+			options[i] = random.nextInt(sizes[i]);
+
+		return options;
+	}
+}
@@ -0,0 +1,136 @@
+package com.medallia.codefixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+
+/**
+ * Describes a hot spot created by {@link MetaProgramGenerator}: where the original expression is in the source code
+ * and the variants its {@link Selector} can choose from.
+ * <br/>
+ * The generator writes the hot spots to a file (one per line, tab separated) so the tools that run after it can
+ * relate the selectors to the original source code.
+ */
+public class HotSpot {
+	private static final Splitter FIELD_SPLITTER = Splitter.on('\t');
+	private static final Splitter VARIANT_SPLITTER = Splitter.on(',');
+
+	private final int id;
+	private final String file;
+	private final int line;
+	private final int sourceStart;
+	private final int sourceEnd;
+	private final List<String> variants;
+	private final String expression;
+	private final int enclosing;
+
+	public HotSpot(int id, String file, int line, int sourceStart, int sourceEnd, List<String> variants, String expression) {
+		this(id, file, line, sourceStart, sourceEnd, variants, expression, 0);
+	}
+
+	/**
+	 * @param enclosing the id of the hot spot this one is nested in, or 0
+	 */
+	public HotSpot(int id, String file, int line, int sourceStart, int sourceEnd, List<String> variants, String expression, int enclosing) {
+		this.id = id;
+		this.file = file;
+		this.line = line;
+		this.sourceStart = sourceStart;
+		this.sourceEnd = sourceEnd;
+		this.variants = variants;
+		this.expression = expression;
+		this.enclosing = enclosing;
+	}
+
+	/** @return a copy of this hot spot nested in the given one */
+	public HotSpot nestedIn(int enclosing) {
+		return new HotSpot(id, file, line, sourceStart, sourceEnd, variants, expression, enclosing);
+	}
+
+	/**
+	 * @return a key for the original expression, given by its position in the source code. It is the same for every
+	 * run of the generator over the same source file.
+	 */
+	public static String keyOf(String file, int sourceStart, int sourceEnd) {
+		return file + ':' + sourceStart + '-' + sourceEnd;
+	}
+
+	public String getKey() {
+		return keyOf(file, sourceStart, sourceEnd);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getFile() {
+		return file;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	/** @return the position of the first char of the original expression in its file */
+	public int getSourceStart() {
+		return sourceStart;
+	}
+
+	/** @return the position of the last char of the original expression in its file */
+	public int getSourceEnd() {
+		return sourceEnd;
+	}
+
+	/** @return the variants in the order of the selector, the first one is the original operator */
+	public List<String> getVariants() {
+		return variants;
+	}
+
+	public String getExpression() {
+		return expression;
+	}
+
+	/** @return the id of the hot spot this one is nested in (its expression is an operand of that one), or 0 */
+	public int getEnclosing() {
+		return enclosing;
+	}
+
+	@Override public String toString() {
+		return String.format("#%s %s:%s '%s'", id, file, line, expression);
+	}
+
+	public static List<HotSpot> read(File hotSpotsFile) throws IOException {
+		return Files.readAllLines(hotSpotsFile.toPath(), StandardCharsets.UTF_8).stream()
+			.filter(line -> !line.isEmpty())
+			.map(HotSpot::parse)
+			.collect(Collectors.toList());
+	}
+
+	public static void write(File hotSpotsFile, Collection<HotSpot> hotSpots) throws IOException {
+		File parent = hotSpotsFile.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+
+		Files.write(hotSpotsFile.toPath(), hotSpots.stream().map(HotSpot::format).collect(Collectors.toList()), StandardCharsets.UTF_8);
+	}
+
+	private static HotSpot parse(String text) {
+		List<String> fields = FIELD_SPLITTER.limit(8).splitToList(text);
+
+		return new HotSpot(Integer.parseInt(fields.get(0)), fields.get(1), Integer.parseInt(fields.get(2)),
+			Integer.parseInt(fields.get(3)), Integer.parseInt(fields.get(4)), VARIANT_SPLITTER.splitToList(fields.get(5)), fields.get(6),
+			fields.size() > 7 ? Integer.parseInt(fields.get(7)) : 0);
+	}
+
+	private String format() {
+		return Joiner.on('\t').join(id, file, line, sourceStart, sourceEnd, Joiner.on(',').join(variants),
+			expression.replaceAll("\\s+", " "), enclosing);
+	}
+}
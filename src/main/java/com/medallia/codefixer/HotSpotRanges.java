@@ -0,0 +1,94 @@
+package com.medallia.codefixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+
+/**
+ * Assigns a range of hot spot ids to each top level type, so the ids of the hot spots of a type do not change when
+ * other types change: they are numbered from the start of the range of their type, in the order of the expressions.
+ * <br/>
+ * The ranges are kept in a file (one per line: the type name, a tab and the first id of the range) to be the same
+ * in the following runs of the generator. It can be shared by several threads.
+ */
+public class HotSpotRanges {
+	/** The number of ids in each range, the first one is not used */
+	public static final int RANGE_SIZE = 1000;
+
+	private final Map<String, Integer> bases = Maps.newHashMap();
+	private int nextBase;
+
+	/**
+	 * @return the ranges in the file, or no range if it does not exist
+	 */
+	public static HotSpotRanges read(File rangesFile) throws IOException {
+		HotSpotRanges ranges = new HotSpotRanges();
+
+		if (rangesFile.exists()) {
+			for (String line : Files.readAllLines(rangesFile.toPath(), StandardCharsets.UTF_8)) {
+				if (line.isEmpty())
+					continue;
+
+				List<String> fields = Splitter.on('\t').splitToList(line);
+				int base = Integer.parseInt(fields.get(1));
+				ranges.bases.put(fields.get(0), base);
+				ranges.nextBase = Math.max(ranges.nextBase, base + RANGE_SIZE);
+			}
+		}
+
+		return ranges;
+	}
+
+	public synchronized void write(File rangesFile) throws IOException {
+		File parent = rangesFile.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+
+		Files.write(rangesFile.toPath(), bases.entrySet().stream()
+			.sorted(Map.Entry.comparingByValue())
+			.map(range -> range.getKey() + '\t' + range.getValue())
+			.collect(Collectors.toList()), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param typeName the qualified name of a top level type
+	 * @param ordinal the number of the hot spot in the type, from 1
+	 * @return the id of the hot spot
+	 */
+	public synchronized int idOf(String typeName, int ordinal) {
+		if (ordinal <= 0 || ordinal >= RANGE_SIZE)
+			throw new IllegalArgumentException(String.format("%s has more than %s hot spots", typeName, RANGE_SIZE - 1));
+
+		return reserve(typeName) + ordinal;
+	}
+
+	/**
+	 * Assigns a range to the type if it does not have one yet. Reserving the ranges of several types in a given order
+	 * makes their ranges independent of the order their hot spots are created.
+	 * @return the first id of the range of the type
+	 */
+	public synchronized int reserve(String typeName) {
+		Integer base = bases.get(typeName);
+		if (base == null) {
+			base = nextBase;
+			nextBase += RANGE_SIZE;
+			bases.put(typeName, base);
+		}
+
+		return base;
+	}
+
+	/** @return the names of the types that have a range, in alphabetical order */
+	public synchronized Set<String> getTypeNames() {
+		return ImmutableSortedSet.copyOf(bases.keySet());
+	}
+}
@@ -0,0 +1,66 @@
+package com.medallia.codefixer;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A child first class loader for classes compiled in memory (see {@link InMemoryCompiler}).
+ * <br/>
+ * The given classes are always defined by this loader, even if an older version of them is in the class path. The
+ * remaining classes are delegated to the parent.
+ */
+public class InMemoryClassLoader extends ClassLoader {
+
+	static {
+		registerAsParallelCapable();
+	}
+
+	private final Map<String, byte[]> classes;
+
+	/**
+	 * @param classes the byte code of each class, by binary name
+	 */
+	public InMemoryClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+		super(parent);
+		this.classes = ImmutableMap.copyOf(classes);
+	}
+
+	/** @return the binary names of the classes compiled in memory */
+	public Set<String> getClassNames() {
+		return classes.keySet();
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		byte[] bytes = classes.get(name);
+		if (bytes == null)
+			return super.loadClass(name, resolve);
+
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> loaded = findLoadedClass(name);
+
+			if (loaded == null)
+				loaded = defineClass(name, bytes, 0, bytes.length);
+
+			if (resolve)
+				resolveClass(loaded);
+
+			return loaded;
+		}
+	}
+
+	@Override
+	public InputStream getResourceAsStream(String name) {
+		if (name.endsWith(".class")) {
+			byte[] bytes = classes.get(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+			if (bytes != null)
+				return new ByteArrayInputStream(bytes);
+		}
+
+		return super.getResourceAsStream(name);
+	}
+}
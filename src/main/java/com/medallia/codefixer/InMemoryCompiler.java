@@ -0,0 +1,73 @@
+package com.medallia.codefixer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Compiles Java sources without going through the disk, against the class path of the running JVM.
+ */
+public class InMemoryCompiler {
+
+	/**
+	 * @param sources the source code of each top level class, by qualified name
+	 * @return the byte code of each class (including the nested ones), by binary name
+	 * @throws IllegalStateException if the sources do not compile
+	 */
+	public static Map<String, byte[]> compile(Map<String, String> sources) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null)
+			throw new IllegalStateException("There is no Java compiler in this JVM, run it from a JDK");
+
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		Map<String, ByteArrayOutputStream> outputs = Maps.newConcurrentMap();
+
+		JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+			@Override public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+				return new SimpleJavaFileObject(URI.create("memory:///" + className.replace('.', '/') + kind.extension), kind) {
+					@Override public OutputStream openOutputStream() {
+						ByteArrayOutputStream output = new ByteArrayOutputStream();
+						outputs.put(className, output);
+						return output;
+					}
+				};
+			}
+		};
+
+		List<JavaFileObject> units = sources.entrySet().stream()
+			.map(source -> new SimpleJavaFileObject(URI.create("memory:///" + source.getKey().replace('.', '/') + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+				@Override public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+					return source.getValue();
+				}
+			})
+			.collect(Collectors.toList());
+
+		if (!compiler.getTask(null, fileManager, diagnostics, ImmutableList.of("-g", "-nowarn"), null, units).call()) {
+			String errors = diagnostics.getDiagnostics().stream()
+				.filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+				.map(Object::toString)
+				.collect(Collectors.joining("\n"));
+			throw new IllegalStateException("Cannot compile the sources:\n" + errors);
+		}
+
+		return ImmutableMap.copyOf(Maps.transformValues(outputs, ByteArrayOutputStream::toByteArray));
+	}
+}
@@ -0,0 +1,205 @@
+package com.medallia.codefixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import spoon.Launcher;
+import spoon.reflect.declaration.CtType;
+
+/**
+ * Generates the meta-program only for the source files that changed since the previous generation.
+ * <br/>
+ * Usage: IncrementalGenerator -i inputDir -o outputDir [--cache cacheDir] [--source-classpath classpath] [--threads N]
+ * <br/>
+ * The cache directory (build/metaprogram-cache by default) keeps the hash of each input file, the meta-program
+ * generated from it and its hot spots. All the files are given to Spoon, so the references of the changed files to the
+ * unchanged ones are resolved (and printed) as in a full generation, but only the types of the changed files are
+ * converted and printed, the meta-program of the unchanged files is copied from the cache. The hot spot ids do not
+ * change for the unchanged files, see {@link HotSpotRanges}. The changed types are converted using a thread per core
+ * (see {@link ParallelGenerator}). The libraries the sources use can be given with --source-classpath.
+ */
+public class IncrementalGenerator {
+	private static final String MANIFEST = "manifest.tsv";
+	private static final String HOT_SPOTS = "hotspots.tsv";
+	private static final String OUTPUT = "output";
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		List<String> arguments = ImmutableList.copyOf(args);
+		File input = new File(requiredArgument(arguments, "-i"));
+		File output = new File(requiredArgument(arguments, "-o"));
+		File cache = new File(argument(arguments, "--cache", "build/metaprogram-cache"));
+		String sourceClasspath = argument(arguments, "--source-classpath", null);
+		int threads = Integer.parseInt(argument(arguments, "--threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+		long startTime = System.currentTimeMillis();
+
+		Map<String, String> hashes = hashSources(input);
+		Map<String, CachedSource> manifest = readManifest(new File(cache, MANIFEST));
+
+		Set<String> changed = Sets.newTreeSet();
+		for (Map.Entry<String, String> source : hashes.entrySet()) {
+			CachedSource cached = manifest.get(source.getKey());
+			if (cached == null || !cached.hash.equals(source.getValue()) || !cached.outputsExist(new File(cache, OUTPUT)))
+				changed.add(source.getKey());
+		}
+		Set<String> removed = Sets.newHashSet(Sets.difference(manifest.keySet(), hashes.keySet()));
+
+		// The outputs of the changed and removed files are generated again or deleted
+		for (String source : Sets.union(changed, removed)) {
+			CachedSource cached = manifest.remove(source);
+			if (cached != null)
+				cached.outputs.forEach(path -> {
+					new File(new File(cache, OUTPUT), path).delete();
+					new File(output, path).delete();
+				});
+		}
+
+		File hotSpotsFile = new File(cache, HOT_SPOTS);
+		List<HotSpot> hotSpots = hotSpotsFile.exists() ? HotSpot.read(hotSpotsFile) : Lists.newArrayList();
+		hotSpots.removeIf(hotSpot -> !manifest.containsKey(relativePath(input, new File(hotSpot.getFile()))));
+
+		if (!changed.isEmpty())
+			hotSpots.addAll(generate(input, changed, sourceClasspath, threads, new File(cache, OUTPUT), hashes, manifest));
+
+		for (CachedSource cached : manifest.values())
+			for (String path : cached.outputs)
+				copyIfChanged(new File(new File(cache, OUTPUT), path), new File(output, path));
+
+		writeManifest(new File(cache, MANIFEST), manifest);
+		HotSpot.write(hotSpotsFile, hotSpots);
+		HotSpot.write(new File(System.getProperty(MetaProgramGenerator.HOT_SPOTS_PROPERTY, MetaProgramGenerator.DEFAULT_HOT_SPOTS_FILE)), hotSpots);
+
+		System.out.println(String.format("%s of %s source files changed (%s removed), meta-program generated in %s ms",
+			changed.size(), hashes.size(), removed.size(), System.currentTimeMillis() - startTime));
+	}
+
+	/**
+	 * Runs {@link MetaProgramGenerator} on the types of the changed files, in the model of all the files, and writes
+	 * their meta-program to the cache
+	 * @return the hot spots created
+	 */
+	private static List<HotSpot> generate(File input, Set<String> changed, String sourceClasspath, int threads, File cacheOutput,
+			Map<String, String> hashes, Map<String, CachedSource> manifest) throws IOException, InterruptedException {
+		List<String> spoonArguments = Lists.newArrayList("--tabs", "--with-imports", "--noclasspath");
+		if (sourceClasspath != null)
+			spoonArguments.addAll(Arrays.asList("--source-classpath", sourceClasspath));
+
+		Launcher launcher = new Launcher();
+		launcher.setArgs(spoonArguments.toArray(new String[spoonArguments.size()]));
+		hashes.keySet().forEach(source -> launcher.addInputResource(new File(input, source).getPath()));
+		launcher.buildModel();
+
+		changed.forEach(source -> manifest.put(source, new CachedSource(hashes.get(source), Lists.newArrayList())));
+
+		HotSpotRanges ranges = HotSpotRanges.read(MetaProgramGenerator.rangesFile());
+		List<HotSpot> hotSpots = Lists.newArrayList();
+
+		Predicate<CtType<?>> changedType = type -> changed.contains(relativePath(input, type.getPosition().getFile()));
+		for (ParallelGenerator.GeneratedType generated : ParallelGenerator.generate(launcher.getFactory(), ranges, threads, changedType)) {
+			String path = generated.getType().getQualifiedName().replace('.', File.separatorChar) + ".java";
+			File file = new File(cacheOutput, path);
+			file.getParentFile().mkdirs();
+			Files.write(file.toPath(), generated.getSource().getBytes(StandardCharsets.UTF_8));
+
+			manifest.get(relativePath(input, generated.getType().getPosition().getFile())).outputs.add(path);
+			hotSpots.addAll(generated.getHotSpots());
+		}
+
+		ranges.write(MetaProgramGenerator.rangesFile());
+
+		return hotSpots;
+	}
+
+	/** @return the hash of each source file, by its path relative to the input directory */
+	private static Map<String, String> hashSources(File input) throws IOException {
+		Map<String, String> hashes = Maps.newTreeMap();
+
+		try (Stream<Path> files = Files.walk(input.toPath())) {
+			for (Path file : files.filter(path -> path.toString().endsWith(".java")).collect(Collectors.toList()))
+				hashes.put(relativePath(input, file.toFile()), Hashing.sha256().hashBytes(Files.readAllBytes(file)).toString());
+		}
+
+		return hashes;
+	}
+
+	private static String relativePath(File directory, File file) {
+		return directory.getAbsoluteFile().toPath().normalize().relativize(file.getAbsoluteFile().toPath().normalize()).toString();
+	}
+
+	private static void copyIfChanged(File from, File to) throws IOException {
+		byte[] content = Files.readAllBytes(from.toPath());
+
+		if (!to.exists() || !Arrays.equals(content, Files.readAllBytes(to.toPath()))) {
+			to.getParentFile().mkdirs();
+			Files.write(to.toPath(), content);
+		}
+	}
+
+	/** The manifest has a line for each source file: its path, a tab, its hash, a tab and its outputs (comma separated) */
+	private static Map<String, CachedSource> readManifest(File manifestFile) throws IOException {
+		Map<String, CachedSource> manifest = Maps.newTreeMap();
+
+		if (manifestFile.exists()) {
+			for (String line : Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+				List<String> fields = Splitter.on('\t').splitToList(line);
+				if (fields.size() == 3)
+					manifest.put(fields.get(0), new CachedSource(fields.get(1), Lists.newArrayList(Splitter.on(',').omitEmptyStrings().split(fields.get(2)))));
+			}
+		}
+
+		return manifest;
+	}
+
+	private static void writeManifest(File manifestFile, Map<String, CachedSource> manifest) throws IOException {
+		manifestFile.getAbsoluteFile().getParentFile().mkdirs();
+
+		Files.write(manifestFile.toPath(), manifest.entrySet().stream()
+			.map(source -> Joiner.on('\t').join(source.getKey(), source.getValue().hash, Joiner.on(',').join(source.getValue().outputs)))
+			.collect(Collectors.toList()), StandardCharsets.UTF_8);
+	}
+
+	private static String argument(List<String> arguments, String name, String defaultValue) {
+		int position = arguments.indexOf(name);
+
+		return position >= 0 && position + 1 < arguments.size() ? arguments.get(position + 1) : defaultValue;
+	}
+
+	private static String requiredArgument(List<String> arguments, String name) {
+		String value = argument(arguments, name, null);
+		if (value == null)
+			throw new IllegalArgumentException("Missing argument " + name);
+
+		return value;
+	}
+
+	private static class CachedSource {
+		final String hash;
+		final List<String> outputs;
+
+		CachedSource(String hash, List<String> outputs) {
+			this.hash = hash;
+			this.outputs = outputs;
+		}
+
+		boolean outputsExist(File cacheOutput) {
+			return outputs.stream().allMatch(path -> new File(cacheOutput, path).exists());
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.medallia.codefixer;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A child first class loader that loads its own copy of some classes.
+ * <br/>
+ * Classes in one of the isolated packages (prefixes ending with a dot) or with one of the isolated names (and their
+ * nested classes) are loaded from the class path by this loader, so each
+ * instance has its own static state (the {@link Selector} registry and the selectors of the meta-program). The
+ * remaining classes (JDK, JUnit, libraries, the fixer itself) are delegated to the parent and shared.
+ */
+public class IsolatingClassLoader extends URLClassLoader {
+
+	static {
+		registerAsParallelCapable();
+	}
+
+	private final List<String> isolatedPrefixes;
+
+	public IsolatingClassLoader(ClassLoader parent, List<String> isolatedPrefixes) {
+		super(classPathUrls(), parent);
+		this.isolatedPrefixes = ImmutableList.copyOf(isolatedPrefixes);
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if (!isIsolated(name))
+			return super.loadClass(name, resolve);
+
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> loaded = findLoadedClass(name);
+
+			if (loaded == null)
+				loaded = findClass(name);
+
+			if (resolve)
+				resolveClass(loaded);
+
+			return loaded;
+		}
+	}
+
+	private boolean isIsolated(String name) {
+		for (String prefix : isolatedPrefixes) {
+			if (name.startsWith(prefix) && (prefix.endsWith(".") || name.length() == prefix.length() || name.charAt(prefix.length()) == '$'))
+				return true;
+		}
+		return false;
+	}
+
+	private static URL[] classPathUrls() {
+		List<String> entries = Splitter.on(File.pathSeparatorChar).omitEmptyStrings().splitToList(System.getProperty("java.class.path"));
+		URL[] urls = new URL[entries.size()];
+
+		for (int i = 0; i < urls.length; i++) {
+			try {
+				urls[i] = new File(entries.get(i)).toURI().toURL();
+			} catch (MalformedURLException e) {
+				throw new IllegalStateException("Invalid class path entry " + entries.get(i), e);
+			}
+		}
+
+		return urls;
+	}
+}
@@ -1,15 +1,29 @@
 package com.medallia.codefixer;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import spoon.processing.AbstractProcessor;
 import spoon.reflect.code.BinaryOperatorKind;
 import spoon.reflect.code.CtBinaryOperator;
 import spoon.reflect.code.CtCodeSnippetExpression;
 import spoon.reflect.code.CtExpression;
+import spoon.reflect.cu.SourcePosition;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtElement;
 import spoon.reflect.declaration.CtField;
@@ -18,22 +32,144 @@ import spoon.reflect.reference.CtTypeReference;
 
 /**
  * Convert a program into a Meta-program
+ * <br/>
+ * The hot spots created are described in the file given by the system property {@value #HOT_SPOTS_PROPERTY} (see
+ * {@link HotSpot}). If the properties {@value #SUSPICIOUSNESS_PROPERTY} (a ranking written by the fault localizer) and
+ * {@value #TOP_K_PROPERTY} are given, only the K most suspicious expressions are converted into hot spots. If the
+ * property {@value #TYPES_PROPERTY} is given (the qualified names of top level types separated by commas) only the
+ * expressions in those types are converted, the other types are kept as they are.
+ * <br/>
+ * When the property {@value #CODEGEN_PROPERTY} is "dispatch" the hot spots evaluate each operand only once (see
+ * {@link #dispatchExpression}), otherwise they are a chain of alternatives (see {@link #mutateOperator}).
+ * <br/>
+ * The hot spot ids are given by the ranges in the file {@value #RANGES_PROPERTY} (see {@link HotSpotRanges}), so they
+ * only change when the type of the hot spot changes.
  */
 public class MetaProgramGenerator extends AbstractProcessor<CtBinaryOperator<Boolean>> {
 
 	public static final String SELECTOR_CLASS = Selector.class.getName();
-
-	private static int index = 0;
+	/** Finds the selectors in the code of an expression, the group 1 is the hot spot */
+	private static final Pattern SELECTOR_CHECK = Pattern.compile("_s(\\d+)\\.(?:is|compare)\\(");
+
+	public static final String HOT_SPOTS_PROPERTY = "codefixer.hotspots";
+	public static final String DEFAULT_HOT_SPOTS_FILE = "build/hotspots.tsv";
+	public static final String SUSPICIOUSNESS_PROPERTY = "codefixer.suspiciousness";
+	public static final String TOP_K_PROPERTY = "codefixer.topK";
+	public static final String CODEGEN_PROPERTY = "codefixer.codegen";
+	public static final String RANGES_PROPERTY = "codefixer.ranges";
+	public static final String TYPES_PROPERTY = "codefixer.types";
+	public static final String DEFAULT_RANGES_FILE = "build/hotspot-ranges.tsv";
 
 	private static final EnumSet<BinaryOperatorKind> LOGICAL_OPERATORS = EnumSet.of(BinaryOperatorKind.AND, BinaryOperatorKind.OR);
 	private static final EnumSet<BinaryOperatorKind> COMPARISON_OPERATORS = EnumSet.of(BinaryOperatorKind.EQ, BinaryOperatorKind.GE, BinaryOperatorKind.GT, BinaryOperatorKind.LE, BinaryOperatorKind.LT, BinaryOperatorKind.NE);
 	private static final EnumSet<BinaryOperatorKind> REDUCED_COMPARISON_OPERATORS = EnumSet.of(BinaryOperatorKind.EQ, BinaryOperatorKind.NE);
 
-	private Set<CtElement> hostSpots = Sets.newHashSet();
+	/** Categories of operands, a comparison can be dispatched by the selector when both operands are in the same category */
+	private static final String NUMERIC = "numeric";
+	private static final String BOOLEAN = "boolean";
+	private static final String REFERENCE = "reference";
+
+	private final List<HotSpot> createdHotSpots = Lists.newArrayList();
+	/** The hot spots already nested in another one */
+	private final Set<Integer> nestedHotSpots = Sets.newHashSet();
+
+	private HotSpotRanges ranges;
+	/** True if the ranges are shared with other generators, the caller writes the ranges and the hot spots */
+	private final boolean sharedRanges;
+	/** The number of hot spots created in each top level type */
+	private final Map<String, Integer> hotSpotCounts = Maps.newHashMap();
+
+	public MetaProgramGenerator() {
+		sharedRanges = false;
+	}
+
+	/**
+	 * Creates a generator that can run at the same time as others, each one processing different top level types
+	 * (see {@link ParallelGenerator}). Its state is confined to the types it processes.
+	 * @param ranges the ranges of the hot spot ids, shared by all the generators
+	 */
+	public MetaProgramGenerator(HotSpotRanges ranges) {
+		this.ranges = ranges;
+		sharedRanges = true;
+	}
+
+	/** The keys of the expressions to convert into hot spots, or null to convert all of them */
+	private Set<String> suspiciousKeys;
+	/** The top level types whose expressions are converted into hot spots, or null to convert all of them */
+	private Set<String> types;
+	private boolean dispatch;
+
+	@Override
+	public void init() {
+		super.init();
+
+		String suspiciousness = System.getProperty(SUSPICIOUSNESS_PROPERTY);
+		if (suspiciousness != null)
+			suspiciousKeys = readMostSuspicious(new File(suspiciousness), Integer.getInteger(TOP_K_PROPERTY, Integer.MAX_VALUE));
+
+		dispatch = "dispatch".equals(System.getProperty(CODEGEN_PROPERTY));
+
+		String typeNames = System.getProperty(TYPES_PROPERTY, "");
+		if (!typeNames.isEmpty())
+			types = ImmutableSet.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(typeNames));
+
+		if (!sharedRanges) {
+			try {
+				ranges = HotSpotRanges.read(rangesFile());
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot read the hot spot ranges", e);
+			}
+		}
+	}
+
+	static File rangesFile() {
+		return new File(System.getProperty(RANGES_PROPERTY, DEFAULT_RANGES_FILE));
+	}
+
+	/**
+	 * @param suspiciousnessFile a ranking of expressions, one per line: the score, a tab and the expression key
+	 * @param topK the number of expressions to take from the top of the ranking
+	 * @return the keys of the expressions
+	 */
+	private static Set<String> readMostSuspicious(File suspiciousnessFile, int topK) {
+		try {
+			return Files.readAllLines(suspiciousnessFile.toPath(), StandardCharsets.UTF_8).stream()
+				.filter(line -> !line.isEmpty())
+				.limit(topK)
+				.map(line -> Splitter.on('\t').splitToList(line).get(1))
+				.collect(Collectors.toSet());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the suspiciousness ranking " + suspiciousnessFile, e);
+		}
+	}
 
 	@Override
 	public boolean isToBeProcessed(CtBinaryOperator<Boolean> element) {
-		return LOGICAL_OPERATORS.contains(element.getKind()) || COMPARISON_OPERATORS.contains(element.getKind());
+		return (LOGICAL_OPERATORS.contains(element.getKind()) || COMPARISON_OPERATORS.contains(element.getKind()))
+			&& (suspiciousKeys == null || suspiciousKeys.contains(keyOf(element.getPosition())))
+			&& (types == null || types.contains(getType(element).getQualifiedName()));
+	}
+
+	private static String keyOf(SourcePosition position) {
+		return position == null ? null : HotSpot.keyOf(position.getFile().getPath(), position.getSourceStart(), position.getSourceEnd());
+	}
+
+	@Override
+	public void processingDone() {
+		if (sharedRanges)
+			return;
+
+		try {
+			HotSpot.write(new File(System.getProperty(HOT_SPOTS_PROPERTY, DEFAULT_HOT_SPOTS_FILE)), createdHotSpots);
+			ranges.write(rangesFile());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the hot spots", e);
+		}
+	}
+
+	/** @return the hot spots created so far */
+	public List<HotSpot> getCreatedHotSpots() {
+		return createdHotSpots;
 	}
 
 	public void process(CtBinaryOperator<Boolean> binaryOperator) {
@@ -57,13 +193,16 @@ public class MetaProgramGenerator extends AbstractProcessor<CtBinaryOperator<Boo
 
 	/**
 	 * Converts "a op b" bean op one of "<", "<=", "==", ">=", "!=" to:
-	 *    (  (op(1, 0, "<")  && (a < b))
-	 *    || (op(1, 1, "<=") && (a <= b))
-	 *    || (op(1, 2, "==") && (a == b))
-	 *    || (op(1, 3, ">=") && (a >= b))
-	 *    || (op(1, 4, ">")  && (a > b))
+	 *    (  (_s1.is(0) && (a < b))
+	 *    || (_s1.is(1) && (a <= b))
+	 *    || (_s1.is(2) && (a == b))
+	 *    || (_s1.is(3) && (a >= b))
+	 *    || (_s1.is(4) && (a > b))
 	 *    )
 	 *
+	 * The variants are checked by their index in the selector (the original operator is always the variant 0, each
+	 * index is followed by a comment with its operator), so the meta-program does not compare strings while running.
+	 *
 	 * com.medallia.codefixer
 	 * @param expression
 	 * @param operators
@@ -71,67 +210,121 @@ public class MetaProgramGenerator extends AbstractProcessor<CtBinaryOperator<Boo
 	private void mutateOperator(final CtBinaryOperator<Boolean> expression, EnumSet<BinaryOperatorKind> operators) {
 
 		System.out.println(String.format("Expression '%s'", expression));
-		if (alreadyInHotsSpot(expression) || expression.toString().contains(".is(\"")) {
-			System.out.println(String.format("Expression '%s' ignored because it is included in previous hot spot", expression));
-			return;
-		}
 
-		int thisIndex = ++index;
+		String typeName = getType(expression).getQualifiedName();
+		int thisIndex = ranges.idOf(typeName, hotSpotCounts.merge(typeName, 1, Integer::sum));
+
+		SourcePosition position = expression.getPosition();
+		String originalExpression = expression.toString();
+		nestHotSpots(originalExpression, thisIndex);
 
-		String originalKind = expression.getKind().toString();
-		String newExpression = operators
-			.stream()
-			.map(kind -> {
-				expression.setKind(kind);
-				return String.format("(_s%s.is(\"%s\") && (%s))", thisIndex, kind, expression);
-			})
-			.collect(Collectors.joining(" || "));
+		List<BinaryOperatorKind> variants = variantsOf(expression.getKind(), operators);
+		String newExpression = dispatch
+			? dispatchExpression(expression, thisIndex, variants)
+			: variants
+				.stream()
+				.map(kind -> {
+					expression.setKind(kind);
+					return String.format("(_s%s.is(%s /* %s */) && (%s))", thisIndex, variants.indexOf(kind), kind, expression);
+				})
+				.collect(Collectors.joining(" || "));
 
 		CtCodeSnippetExpression<Boolean> codeSnippet =  getFactory().Core().createCodeSnippetExpression();
 		codeSnippet.setValue('(' + newExpression + ')');
 
 		expression.replace(codeSnippet);
 		expression.replace(expression);
-		addVariableToClass(expression, originalKind, thisIndex, operators);
+		addVariableToClass(expression, thisIndex, variants);
 
-		hostSpots.add(expression);
+		if (position != null)
+			createdHotSpots.add(new HotSpot(thisIndex, position.getFile().getPath(), position.getLine(), position.getSourceStart(), position.getSourceEnd(),
+				variants.stream().map(BinaryOperatorKind::toString).collect(Collectors.toList()), originalExpression));
 
 	}
 
 	/**
-	 * Check if this sub expression was already inside an uppermost expression that was processed has a hot spot.
-	 * This version does not allowed conflicting hot spots
-	 * @param element the current expression to test
-	 * @return true if this expression is descendant of an already processed expression
+	 * Builds a hot spot that evaluates each operand only once and checks the selector once:
+	 * <ul>
+	 * <li>Comparisons of two numbers, two booleans or two references (== and != only) call the selector, that applies
+	 * the chosen operator: {@code _s1.compare(a, b)}</li>
+	 * <li>Other expressions (logical operators, that should not evaluate the right operand eagerly, or mixed operand
+	 * types) choose one of the variants: {@code (_s1.is(0) ? (a && b) : (a || b))}</li>
+	 * </ul>
 	 */
-	private boolean alreadyInHotsSpot(CtElement element) {
-		CtElement parent = element.getParent();
+	private String dispatchExpression(CtBinaryOperator<Boolean> expression, int index, List<BinaryOperatorKind> variants) {
+		String left = categoryOf(expression.getLeftHandOperand());
+		String right = categoryOf(expression.getRightHandOperand());
+
+		boolean comparable = left.equals(right)
+			&& (!left.equals(REFERENCE) || REDUCED_COMPARISON_OPERATORS.containsAll(variants))
+			&& COMPARISON_OPERATORS.containsAll(variants);
+
+		if (comparable)
+			return String.format("_s%s.compare(%s, %s)", index, expression.getLeftHandOperand(), expression.getRightHandOperand());
 
-		while (!isTopLevel(parent)) {
-			if (hostSpots.contains(parent))
-				return true;
+		StringBuilder sb = new StringBuilder();
+		int last = variants.size() - 1;
 
-			parent = parent.getParent();
+		for (int i = 0; i < last; i++) {
+			expression.setKind(variants.get(i));
+			sb.append(String.format("_s%s.is(%s /* %s */) ? (%s) : ", index, i, variants.get(i), expression));
 		}
+		expression.setKind(variants.get(last));
+		sb.append('(').append(expression).append(')');
 
-		return false;
+		return sb.toString();
 	}
 
-	private boolean isTopLevel(CtElement parent) {
-		return parent instanceof CtClass && ((CtClass) parent).isTopLevel();
+	private String categoryOf(CtExpression<?> operand) {
+		// The operands that are nested hot spots are code snippets, without a type
+		if (operand.getType() == null)
+			return REFERENCE;
+		if (isPrimitiveNorBoolean(operand))
+			return NUMERIC;
+
+		return operand.getType().getSimpleName().equals("boolean") ? BOOLEAN : REFERENCE;
 	}
 
-	private void addVariableToClass(CtElement element, String originalKind, int index, EnumSet<BinaryOperatorKind> operators) {
+	/**
+	 * @return the variants for a hot spot: the original operator first (so it is variant 0) followed by the others
+	 */
+	private List<BinaryOperatorKind> variantsOf(BinaryOperatorKind originalKind, EnumSet<BinaryOperatorKind> operators) {
+		List<BinaryOperatorKind> variants = Lists.newArrayList(originalKind);
+
+		for (BinaryOperatorKind kind : operators) {
+			if (kind != originalKind)
+				variants.add(kind);
+		}
+
+		return variants;
+	}
+
+	/**
+	 * The operands of an expression are processed before the expression, so the hot spots found in its code are nested
+	 * in the new one (unless they are already nested in one of its operands).
+	 * @param code the code of the expression, with its operands already converted
+	 * @param index the hot spot of the expression
+	 */
+	private void nestHotSpots(String code, int index) {
+		List<Integer> nested = Lists.newArrayList();
+		Matcher matcher = SELECTOR_CHECK.matcher(code);
+
+		while (matcher.find()) {
+			int hotSpot = Integer.parseInt(matcher.group(1));
+			if (nestedHotSpots.add(hotSpot))
+				nested.add(hotSpot);
+		}
+
+		createdHotSpots.replaceAll(hotSpot -> nested.contains(hotSpot.getId()) ? hotSpot.nestedIn(index) : hotSpot);
+	}
+
+	private void addVariableToClass(CtElement element, int index, List<BinaryOperatorKind> variants) {
 
 		CtCodeSnippetExpression<Object> codeSnippet =  getFactory().Core().createCodeSnippetExpression();
 
 		StringBuilder sb = new StringBuilder(SELECTOR_CLASS + ".of(").append(index);
 
-		sb.append(',').append('"').append(originalKind).append('"');
-		for (BinaryOperatorKind kind : operators) {
-			if (kind.toString().equals(originalKind)) {
-				continue;
-			}
+		for (BinaryOperatorKind kind : variants) {
 			sb.append(',').append('"').append(kind).append('"');
 		}
 
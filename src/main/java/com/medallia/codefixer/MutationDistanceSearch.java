@@ -0,0 +1,103 @@
+package com.medallia.codefixer;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.primitives.Ints;
+
+/**
+ * Checks the option vectors by the number of selectors changed from the original program: first the original, then
+ * all the vectors with one selector changed, then the ones with two, and so on up to a maximum.
+ * <br/>
+ * Real fixes usually change one or two operators, so they are found long before the exhaustive search gets to them.
+ */
+public class MutationDistanceSearch implements SearchStrategy {
+	private final int[] sizes;
+	private final int[] mutable;
+	private final int maxChanges;
+
+	/**
+	 * @param sizes the number of variants for each selector
+	 * @param maxChanges the maximum number of selectors changed from the original
+	 */
+	public MutationDistanceSearch(List<Integer> sizes, int maxChanges) {
+		this.sizes = Ints.toArray(sizes);
+		this.maxChanges = maxChanges;
+
+		// Selectors with only the original variant cannot be changed
+		int[] positions = new int[this.sizes.length];
+		int count = 0;
+		for (int i = 0; i < this.sizes.length; i++) {
+			if (this.sizes[i] > 1)
+				positions[count++] = i;
+		}
+		this.mutable = Arrays.copyOf(positions, count);
+	}
+
+	@Override public Iterator<int[]> iterator() {
+		return new AbstractIterator<int[]>() {
+			/** the number of selectors changed */
+			int changes = -1;
+			/** the positions (in mutable) of the changed selectors */
+			int[] changed;
+			/** the variant chosen for each changed selector, from 1 to its size - 1 */
+			int[] variants;
+
+			@Override protected int[] computeNext() {
+				if (changes < 0) {
+					changes = 0;
+					changed = new int[0];
+					variants = new int[0];
+					return build();
+				}
+
+				for (int i = changes - 1; i >= 0; i--) {
+					if (variants[i] < sizes[mutable[changed[i]]] - 1) {
+						variants[i]++;
+						return build();
+					}
+					variants[i] = 1;
+				}
+
+				if (!nextCombination()) {
+					changes++;
+					if (changes > maxChanges || changes > mutable.length)
+						return endOfData();
+
+					changed = new int[changes];
+					for (int i = 0; i < changes; i++)
+						changed[i] = i;
+				}
+
+				variants = new int[changes];
+				Arrays.fill(variants, 1);
+
+				return build();
+			}
+
+			/** Moves to the next set of changed selectors with the same size */
+			private boolean nextCombination() {
+				for (int i = changes - 1; i >= 0; i--) {
+					if (changed[i] < mutable.length - changes + i) {
+						changed[i]++;
+						for (int j = i + 1; j < changes; j++)
+							changed[j] = changed[j - 1] + 1;
+						return true;
+					}
+				}
+				return false;
+			}
+
+			private int[] build() {
+				int[] options = new int[sizes.length];
+
+				for (int i = 0; i < changes; i++)
+					options[mutable[changed[i]]] = variants[i];
+
+				return options;
+			}
+		};
+	}
+}
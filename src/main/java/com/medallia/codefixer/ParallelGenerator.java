@@ -0,0 +1,112 @@
+package com.medallia.codefixer;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+import spoon.processing.ProcessingManager;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.visitor.DefaultJavaPrettyPrinter;
+import spoon.support.QueueProcessingManager;
+
+/**
+ * Converts the types of a Spoon model into the meta-program using several threads.
+ * <br/>
+ * Each top level type is processed (and printed) by its own {@link MetaProgramGenerator}, so the generators do not
+ * share any state but the {@link HotSpotRanges}. The ranges of the new classes are reserved in the order of their
+ * names before starting, so the hot spot ids do not depend on the order the threads run.
+ */
+public class ParallelGenerator {
+
+	/** The meta-program of a top level type */
+	public static class GeneratedType {
+		private final CtType<?> type;
+		private final String source;
+		private final List<HotSpot> hotSpots;
+
+		GeneratedType(CtType<?> type, String source, List<HotSpot> hotSpots) {
+			this.type = type;
+			this.source = source;
+			this.hotSpots = hotSpots;
+		}
+
+		public CtType<?> getType() {
+			return type;
+		}
+
+		/** @return the source code of the meta-program of the type */
+		public String getSource() {
+			return source;
+		}
+
+		public List<HotSpot> getHotSpots() {
+			return hotSpots;
+		}
+	}
+
+	/**
+	 * @param factory the factory of a model already built
+	 * @param ranges the ranges of the hot spot ids
+	 * @param threads the number of threads to use
+	 * @return the meta-program of each top level type in the model, in the order of their names
+	 */
+	public static List<GeneratedType> generate(Factory factory, HotSpotRanges ranges, int threads) throws InterruptedException {
+		return generate(factory, ranges, threads, type -> true);
+	}
+
+	/**
+	 * @param factory the factory of a model already built
+	 * @param ranges the ranges of the hot spot ids
+	 * @param threads the number of threads to use
+	 * @param filter the top level types to convert, the others are only in the model to resolve the references to them
+	 * @return the meta-program of each top level type accepted by the filter, in the order of their names
+	 */
+	public static List<GeneratedType> generate(Factory factory, HotSpotRanges ranges, int threads, Predicate<CtType<?>> filter) throws InterruptedException {
+		List<CtType<?>> types = factory.Type().getAll().stream()
+			.filter(filter)
+			.sorted(Comparator.comparing(CtType::getQualifiedName))
+			.collect(Collectors.toList());
+
+		// Only classes get hot spots (their selectors are static fields)
+		types.stream().filter(type -> type instanceof CtClass).forEach(type -> ranges.reserve(type.getQualifiedName()));
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<GeneratedType>> futures = Lists.newArrayList();
+			for (CtType<?> type : types)
+				futures.add(executor.submit(() -> generate(factory, ranges, type)));
+
+			List<GeneratedType> generated = Lists.newArrayList();
+			for (Future<GeneratedType> future : futures)
+				generated.add(future.get());
+
+			return generated;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Cannot generate the meta-program", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static GeneratedType generate(Factory factory, HotSpotRanges ranges, CtType<?> type) {
+		MetaProgramGenerator generator = new MetaProgramGenerator(ranges);
+
+		ProcessingManager processing = new QueueProcessingManager(factory);
+		processing.addProcessor(generator);
+		processing.process(Collections.singletonList(type));
+
+		DefaultJavaPrettyPrinter printer = new DefaultJavaPrettyPrinter(factory.getEnvironment());
+		printer.calculate(type.getPosition().getCompilationUnit(), Collections.singletonList(type));
+
+		return new GeneratedType(type, printer.getResult(), generator.getCreatedHotSpots());
+	}
+}
@@ -0,0 +1,294 @@
+package com.medallia.codefixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import spoon.reflect.code.BinaryOperatorKind;
+
+/**
+ * Writes a patch for each successful candidate: a unified diff against the original source code, as it was before
+ * Spoon changed its style.
+ * <br/>
+ * The patch is made by replacing the operator of each hot spot the candidate changes in the original source, at the
+ * position written by the {@link MetaProgramGenerator}, so the meta-program is not generated again. The operator of
+ * each hot spot is found once, the first time a candidate changes it, and the source files are read once. Each patch
+ * is written as soon as its candidate is checked, in a file named by its options. The original program, that does
+ * not change any hot spot, has no patch.
+ */
+public class PatchWriter implements ResultSink {
+	private static final int CONTEXT_LINES = 3;
+
+	private static final Map<BinaryOperatorKind, String> SYMBOLS = ImmutableMap.<BinaryOperatorKind, String>builder()
+		.put(BinaryOperatorKind.OR, "||").put(BinaryOperatorKind.AND, "&&")
+		.put(BinaryOperatorKind.BITOR, "|").put(BinaryOperatorKind.BITXOR, "^").put(BinaryOperatorKind.BITAND, "&")
+		.put(BinaryOperatorKind.EQ, "==").put(BinaryOperatorKind.NE, "!=")
+		.put(BinaryOperatorKind.LT, "<").put(BinaryOperatorKind.GT, ">").put(BinaryOperatorKind.LE, "<=").put(BinaryOperatorKind.GE, ">=")
+		.put(BinaryOperatorKind.SL, "<<").put(BinaryOperatorKind.SR, ">>").put(BinaryOperatorKind.USR, ">>>")
+		.put(BinaryOperatorKind.PLUS, "+").put(BinaryOperatorKind.MINUS, "-")
+		.put(BinaryOperatorKind.MUL, "*").put(BinaryOperatorKind.DIV, "/").put(BinaryOperatorKind.MOD, "%")
+		.build();
+
+	/** The operators of Java, the longest first so a token is read as the longest operator it starts with */
+	private static final List<String> OPERATORS = ImmutableList.of(">>>=", "<<=", ">>=", ">>>", "&&", "||", "==", "!=", "<=", ">=",
+		"<<", ">>", "->", "::", "++", "--", "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^=",
+		"=", "<", ">", "!", "~", "?", ":", "+", "-", "*", "/", "%", "&", "|", "^");
+
+	private final File directory;
+	private final List<HotSpot> hotSpots;
+	private final Path root = Paths.get("").toAbsolutePath();
+	private final ConcurrentMap<String, Source> sources = Maps.newConcurrentMap();
+	/** The position of the operator of each hot spot in its file, by the index of its selector */
+	private final ConcurrentMap<Integer, Integer> operatorPositions = Maps.newConcurrentMap();
+	private int count;
+
+	/**
+	 * @param directory where the patches are written
+	 * @param hotSpots the hot spot of each selector, in the order of the option vectors (null if it is not known)
+	 */
+	public PatchWriter(File directory, List<HotSpot> hotSpots) {
+		this.directory = directory;
+		this.hotSpots = hotSpots;
+		directory.mkdirs();
+	}
+
+	@Override public void accept(CandidateResult result) {
+		if (!result.wasSuccessful() || Arrays.stream(result.getOptions()).allMatch(option -> option == 0))
+			return;
+
+		File patchFile = new File(directory, "candidate-" + Ints.join("-", result.getOptions()) + ".patch");
+		try (Writer writer = Files.newBufferedWriter(patchFile.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(patchOf(result));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the patch " + patchFile, e);
+		}
+
+		synchronized (this) {
+			count++;
+		}
+	}
+
+	/** @return the number of patches written */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the unified diff that applies the options of the candidate to the original source, preceded by the
+	 * description of the candidate
+	 */
+	String patchOf(CandidateResult result) throws IOException {
+		StringBuilder patch = new StringBuilder();
+		patch.append("Candidate ").append(result).append('\n');
+
+		// The operators to replace, by file and then by their position in it
+		Map<String, Map<Integer, String>> replacements = Maps.newTreeMap();
+		int[] options = result.getOptions();
+		for (int i = 0; i < options.length; i++) {
+			if (options[i] == 0)
+				continue;
+
+			HotSpot hotSpot = i < hotSpots.size() ? hotSpots.get(i) : null;
+			if (hotSpot == null) {
+				patch.append(String.format("The selector %s is not in the hot spots file, its change is not in the patch\n", i));
+				continue;
+			}
+
+			replacements.computeIfAbsent(hotSpot.getFile(), file -> Maps.newTreeMap())
+				.put(operatorPosition(i, hotSpot), SYMBOLS.get(BinaryOperatorKind.valueOf(hotSpot.getVariants().get(options[i]))));
+		}
+
+		for (Map.Entry<String, Map<Integer, String>> fileReplacements : replacements.entrySet())
+			appendDiff(patch, sourceOf(fileReplacements.getKey()), fileReplacements.getValue());
+
+		return patch.toString();
+	}
+
+	private void appendDiff(StringBuilder patch, Source source, Map<Integer, String> replacements) {
+		// The replacements do not add or remove lines, so each changed line is replaced by a single line
+		Map<Integer, String> changedLines = Maps.newTreeMap();
+		for (Map.Entry<Integer, String> replacement : replacements.entrySet()) {
+			int position = replacement.getKey();
+			int line = source.lineOf(position);
+			String text = changedLines.computeIfAbsent(line, source::line);
+			// Several operators can be in the same line, the position is moved by the ones already replaced before it
+			int column = position - source.lineStart(line) + text.length() - source.line(line).length();
+			changedLines.put(line, text.substring(0, column) + replacement.getValue() + text.substring(column + source.operatorLength(position)));
+		}
+
+		patch.append("--- a/").append(source.name).append('\n');
+		patch.append("+++ b/").append(source.name).append('\n');
+
+		List<Integer> lines = Lists.newArrayList(changedLines.keySet());
+		for (int first = 0; first < lines.size(); ) {
+			// The changed lines closer than twice the context go in the same hunk
+			int last = first;
+			while (last + 1 < lines.size() && lines.get(last + 1) - lines.get(last) <= 2 * CONTEXT_LINES)
+				last++;
+
+			int start = Math.max(0, lines.get(first) - CONTEXT_LINES);
+			int end = Math.min(source.lineCount() - 1, lines.get(last) + CONTEXT_LINES);
+			patch.append(String.format("@@ -%1$s,%2$s +%1$s,%2$s @@\n", start + 1, end - start + 1));
+			for (int line = start; line <= end; line++) {
+				String changed = changedLines.get(line);
+				if (changed == null)
+					appendLine(patch, ' ', source, line, source.line(line));
+				else {
+					appendLine(patch, '-', source, line, source.line(line));
+					appendLine(patch, '+', source, line, changed);
+				}
+			}
+
+			first = last + 1;
+		}
+	}
+
+	private static void appendLine(StringBuilder patch, char prefix, Source source, int line, String text) {
+		patch.append(prefix).append(text).append('\n');
+		if (line == source.lineCount() - 1 && !source.text.endsWith("\n"))
+			patch.append("\\ No newline at end of file\n");
+	}
+
+	private int operatorPosition(int selector, HotSpot hotSpot) throws IOException {
+		Integer position = operatorPositions.get(selector);
+		if (position == null) {
+			position = sourceOf(hotSpot.getFile()).findOperator(hotSpot);
+			operatorPositions.put(selector, position);
+		}
+
+		return position;
+	}
+
+	private Source sourceOf(String file) throws IOException {
+		Source source = sources.get(file);
+		if (source == null) {
+			Path path = Paths.get(file).toAbsolutePath();
+			String name = path.startsWith(root) ? root.relativize(path).toString() : path.toString();
+			source = new Source(name.replace(File.separatorChar, '/'), new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+			sources.putIfAbsent(file, source);
+		}
+
+		return source;
+	}
+
+	/** An original source file and the position where each of its lines starts */
+	private static class Source {
+		final String name;
+		final String text;
+		final int[] lineStarts;
+
+		Source(String name, String text) {
+			this.name = name;
+			this.text = text;
+
+			List<Integer> starts = Lists.newArrayList(0);
+			for (int i = 0; i < text.length(); i++)
+				if (text.charAt(i) == '\n' && i + 1 < text.length())
+					starts.add(i + 1);
+			lineStarts = Ints.toArray(starts);
+		}
+
+		int lineCount() {
+			return lineStarts.length;
+		}
+
+		/** @return the line (from 0) that has the char at the position */
+		int lineOf(int position) {
+			int line = Arrays.binarySearch(lineStarts, position);
+			return line >= 0 ? line : -line - 2;
+		}
+
+		int lineStart(int line) {
+			return lineStarts[line];
+		}
+
+		/** @return the text of the line, without its end */
+		String line(int line) {
+			int end = line + 1 < lineStarts.length ? lineStarts[line + 1] - 1 : text.length();
+			if (end > lineStarts[line] && text.charAt(end - 1) == '\n')
+				end--;
+			return text.substring(lineStarts[line], end);
+		}
+
+		int operatorLength(int position) {
+			return operatorAt(position).length();
+		}
+
+		/**
+		 * Finds the operator of the hot spot in its expression: the last one that is not in parentheses, a string or
+		 * a comment (the binary operators of Java are left associative, so the operands cannot have the same operator
+		 * outside parentheses but the left one).
+		 * @return the position of the operator in the file
+		 * @throws IllegalStateException if the expression does not have the operator, because the file changed after
+		 * the meta-program was generated
+		 */
+		int findOperator(HotSpot hotSpot) {
+			String symbol = SYMBOLS.get(BinaryOperatorKind.valueOf(hotSpot.getVariants().get(0)));
+			int end = Math.min(hotSpot.getSourceEnd() + 1, text.length());
+			int found = -1;
+			int depth = 0;
+
+			for (int i = hotSpot.getSourceStart(); i < end; ) {
+				char c = text.charAt(i);
+				if (c == '"' || c == '\'')
+					i = skipLiteral(i, c);
+				else if (text.startsWith("//", i))
+					i = Math.max(text.indexOf('\n', i), i + 2);
+				else if (text.startsWith("/*", i))
+					i = Math.max(text.indexOf("*/", i + 2) + 2, i + 2);
+				else if (c == '(' || c == '[' || c == '{') {
+					depth++;
+					i++;
+				} else if (c == ')' || c == ']' || c == '}') {
+					depth--;
+					i++;
+				} else {
+					String operator = operatorAt(i);
+					if (operator.equals(symbol) && depth == 0)
+						found = i;
+					i += Math.max(1, operator.length());
+				}
+			}
+
+			if (found < 0)
+				throw new IllegalStateException(String.format("The operator %s of the hot spot %s is not in %s, the file changed after the meta-program was generated",
+					symbol, hotSpot.getId(), name));
+
+			return found;
+		}
+
+		private int skipLiteral(int start, char quote) {
+			for (int i = start + 1; i < text.length(); i++) {
+				if (text.charAt(i) == '\\')
+					i++;
+				else if (text.charAt(i) == quote)
+					return i + 1;
+			}
+
+			return text.length();
+		}
+
+		/** @return the operator that starts at the position, or an empty string if there is none */
+		private String operatorAt(int position) {
+			for (String operator : OPERATORS)
+				if (text.startsWith(operator, position))
+					return operator;
+
+			return "";
+		}
+	}
+}
@@ -0,0 +1,341 @@
+package com.medallia.codefixer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Keeps the results of the candidates checked by previous runs, so a run that is repeated, interrupted or uses
+ * another search strategy does not check them again.
+ * <br/>
+ * The results are appended to a binary file whose header has the fingerprint of the meta-program, the tests and the
+ * settings, the timeout and the variants of each selector. If the fingerprint changed the file is started again, if
+ * the timeout changed only the results that could be different with the new timeout are dropped. Each result is a
+ * record of a few bytes, in the format of {@link BinaryResultLog}. The records are kept in memory as they are in the
+ * file, one after the other in a byte array, indexed by a hash table of their positions: a result is only decoded
+ * when it is found. The file is flushed at least every second, so a run that crashes loses at most the last second of
+ * results, and a truncated last record is dropped when the file is read again. It can be shared by several workers.
+ */
+public class ResultCache implements Closeable {
+	private static final int MAGIC = 0x43464331; // "CFC1"
+	private static final long FLUSH_INTERVAL = 1_000;
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	private final File cacheFile;
+	/** The names of the variants of each selector, to name the options of the results */
+	private final List<String[]> variants;
+	/** The records of the results, as they are in the file after its header */
+	private byte[] records = new byte[INITIAL_CAPACITY * 16];
+	private int length;
+	/** Open addressing hash table of the records by their options: the position of a record + 1, 0 if it is free */
+	private int[] table = new int[INITIAL_CAPACITY];
+	private int count;
+
+	private final DataOutputStream out;
+	private final int loaded;
+	private int hits;
+	private long lastFlush = System.currentTimeMillis();
+
+	/**
+	 * @param cacheFile where the results are kept
+	 * @param fingerprint identifies the meta-program, the tests and the settings the results are for, see {@link #fingerprint}
+	 * @param timeout the time in ms a candidate can run before being aborted
+	 * @param variants the names of the variants of each selector, in the order of the option vectors
+	 */
+	public ResultCache(File cacheFile, String fingerprint, long timeout, List<List<String>> variants) throws IOException {
+		this.cacheFile = cacheFile;
+		this.variants = variants.stream().map(selectorVariants -> selectorVariants.toArray(new String[selectorVariants.size()])).collect(Collectors.toList());
+
+		File parent = cacheFile.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+
+		boolean append = cacheFile.exists() && load(fingerprint, timeout);
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile, append)));
+		if (!append) {
+			out.writeInt(MAGIC);
+			out.writeUTF(fingerprint);
+			out.writeLong(timeout);
+			BinaryResultLog.writeVariants(out, variants);
+			out.write(records, 0, length);
+			out.flush();
+		}
+		loaded = count;
+	}
+
+	/**
+	 * Reads the records of the file that are valid with the given timeout: the ones that timed out with a longer
+	 * timeout would not end now and the ones that ran longer than the timeout would time out now, they are checked
+	 * again. A truncated last record is dropped too.
+	 * @return true if the file can be kept as it is, false if it has to be written again with the records read (none
+	 * if it is not for the given fingerprint)
+	 */
+	private boolean load(String fingerprint, long timeout) throws IOException {
+		byte[] content = Files.readAllBytes(cacheFile.toPath());
+		ByteArrayInputStream bytes = new ByteArrayInputStream(content);
+		DataInputStream in = new DataInputStream(bytes);
+
+		long fileTimeout;
+		try {
+			if (in.readInt() != MAGIC || !in.readUTF().equals(fingerprint))
+				return false;
+			fileTimeout = in.readLong();
+			BinaryResultLog.readVariants(in);
+		} catch (IOException e) {
+			// Not a cache file or an incomplete header
+			return false;
+		}
+
+		boolean unchanged = fileTimeout == timeout;
+		records = new byte[Math.max(records.length, bytes.available())];
+		while (bytes.available() > 0) {
+			int start = content.length - bytes.available();
+			CandidateResult result;
+			try {
+				result = BinaryResultLog.readResult(in, variants);
+			} catch (EOFException e) {
+				// The last record of a run that crashed, it is checked again
+				unchanged = false;
+				break;
+			}
+
+			if (result.isTimedOut() ? timeout <= fileTimeout : result.getRunTime() < timeout) {
+				int recordLength = content.length - bytes.available() - start;
+				System.arraycopy(content, start, records, length, recordLength);
+				length += recordLength;
+				index(length - recordLength);
+			} else
+				unchanged = false;
+		}
+
+		return unchanged;
+	}
+
+	/**
+	 * @return the result of the candidate with the given option vector, or null if it was not checked yet
+	 */
+	public synchronized CandidateResult get(int[] options) {
+		int position = find(options);
+		if (position < 0)
+			return null;
+
+		hits++;
+		try {
+			return BinaryResultLog.readResult(recordAt(position), variants);
+		} catch (IOException e) {
+			throw new IllegalStateException("Invalid record at " + position, e);
+		}
+	}
+
+	/** @param result the result of a candidate that was just checked */
+	public synchronized void put(CandidateResult result) {
+		if (find(result.getOptions()) >= 0)
+			return;
+
+		ByteArrayDataOutput record = ByteStreams.newDataOutput();
+		try {
+			BinaryResultLog.writeResult(record, result);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot encode the result of " + result, e);
+		}
+		byte[] bytes = record.toByteArray();
+
+		if (length + bytes.length > records.length)
+			records = Arrays.copyOf(records, Math.max(records.length * 2, length + bytes.length));
+		System.arraycopy(bytes, 0, records, length, bytes.length);
+		length += bytes.length;
+		index(length - bytes.length);
+
+		try {
+			out.write(bytes);
+
+			long now = System.currentTimeMillis();
+			if (now - lastFlush >= FLUSH_INTERVAL) {
+				out.flush();
+				lastFlush = now;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the result of " + result, e);
+		}
+	}
+
+	/** @return the position of the record with the given options, or -1 if there is none */
+	private int find(int[] options) {
+		for (int slot = slotOf(Arrays.hashCode(options)); table[slot] != 0; slot = (slot + 1) & (table.length - 1)) {
+			if (hasOptions(table[slot] - 1, options))
+				return table[slot] - 1;
+		}
+
+		return -1;
+	}
+
+	/** Adds the record at the position to the hash table, growing it to keep it at most half full */
+	private void index(int position) {
+		if (++count * 2 > table.length) {
+			int[] old = table;
+			table = new int[old.length * 2];
+			for (int entry : old) {
+				if (entry != 0)
+					insert(entry - 1);
+			}
+		}
+
+		insert(position);
+	}
+
+	private void insert(int position) {
+		int slot = slotOf(Arrays.hashCode(optionsAt(position)));
+		while (table[slot] != 0)
+			slot = (slot + 1) & (table.length - 1);
+
+		table[slot] = position + 1;
+	}
+
+	private int slotOf(int hash) {
+		return (hash ^ (hash >>> 16)) & (table.length - 1);
+	}
+
+	private boolean hasOptions(int position, int[] options) {
+		DataInputStream in = recordAt(position);
+		try {
+			for (int option : options) {
+				if (BinaryResultLog.readNumber(in) != option)
+					return false;
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Invalid record at " + position, e);
+		}
+
+		return true;
+	}
+
+	private int[] optionsAt(int position) {
+		DataInputStream in = recordAt(position);
+		int[] options = new int[variants.size()];
+		try {
+			for (int i = 0; i < options.length; i++)
+				options[i] = (int) BinaryResultLog.readNumber(in);
+		} catch (IOException e) {
+			throw new IllegalStateException("Invalid record at " + position, e);
+		}
+
+		return options;
+	}
+
+	private DataInputStream recordAt(int position) {
+		return new DataInputStream(new ByteArrayInputStream(records, position, length - position));
+	}
+
+	/** @return the number of results read from the file */
+	public int getLoadedCount() {
+		return loaded;
+	}
+
+	/** @return the number of candidates whose result was found in the cache */
+	public synchronized int getHitCount() {
+		return hits;
+	}
+
+	@Override public synchronized void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Computes the fingerprint of compiled classes (usually the meta-program and the tests) and the settings that
+	 * change the results. Each class is read with its nested, local and anonymous classes, as they can have selectors
+	 * too.
+	 * @param loader where to read the classes from
+	 * @param classNames the top level classes the results depend on
+	 * @param settings other values the results depend on
+	 * @return the fingerprint
+	 */
+	public static String fingerprint(ClassLoader loader, Iterable<String> classNames, Object... settings) throws IOException {
+		Hasher hasher = Hashing.sha256().newHasher();
+
+		for (String className : classNames) {
+			for (String name : withNestedClasses(loader, className)) {
+				try (InputStream in = loader.getResourceAsStream(name.replace('.', '/') + ".class")) {
+					if (in == null)
+						throw new IOException("Cannot find the class " + name);
+
+					hasher.putString(name, StandardCharsets.UTF_8);
+					hasher.putBytes(ByteStreams.toByteArray(in));
+				}
+			}
+		}
+		for (Object setting : settings)
+			hasher.putString(String.valueOf(setting), StandardCharsets.UTF_8);
+
+		return hasher.hash().toString();
+	}
+
+	/**
+	 * @return the class and the classes compiled from its body (the class files named after it and a $), sorted
+	 */
+	private static SortedSet<String> withNestedClasses(ClassLoader loader, String className) throws IOException {
+		SortedSet<String> names = Sets.newTreeSet(Collections.singleton(className));
+		String nestedPrefix = className + '$';
+
+		if (loader instanceof InMemoryClassLoader) {
+			for (String name : ((InMemoryClassLoader) loader).getClassNames()) {
+				if (name.startsWith(nestedPrefix))
+					names.add(name);
+			}
+			return names;
+		}
+
+		String path = className.replace('.', '/') + ".class";
+		URL url = loader.getResource(path);
+		if (url == null)
+			throw new IOException("Cannot find the class " + className);
+
+		String packagePrefix = className.substring(0, className.lastIndexOf('.') + 1);
+		String filePrefix = nestedPrefix.substring(packagePrefix.length());
+		try {
+			if (url.getProtocol().equals("file")) {
+				File[] files = new File(url.toURI()).getParentFile().listFiles((dir, name) -> name.startsWith(filePrefix) && name.endsWith(".class"));
+				for (File file : files)
+					names.add(packagePrefix + file.getName().substring(0, file.getName().length() - ".class".length()));
+			} else if (url.getProtocol().equals("jar")) {
+				String entryPrefix = nestedPrefix.replace('.', '/');
+				try (JarFile jar = new JarFile(new File(((JarURLConnection) url.openConnection()).getJarFileURL().toURI()))) {
+					for (JarEntry entry : Collections.list(jar.entries())) {
+						if (entry.getName().startsWith(entryPrefix) && entry.getName().endsWith(".class"))
+							names.add(entry.getName().substring(0, entry.getName().length() - ".class".length()).replace('/', '.'));
+					}
+				}
+			} else
+				throw new IOException("Cannot list the nested classes of " + className + " in " + url);
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid location of the class " + className + ": " + url, e);
+		}
+
+		return names;
+	}
+}
@@ -0,0 +1,74 @@
+package com.medallia.codefixer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Receives the result of each candidate as soon as it is checked, so the results of a search do not have to be kept
+ * in memory until it ends.
+ * <br/>
+ * The results can arrive from several workers at the same time, in any order. The sink is closed when the search ends.
+ */
+public interface ResultSink extends Closeable {
+
+	/**
+	 * @param result the result of a candidate
+	 * @throws UncheckedIOException if the result cannot be written
+	 */
+	void accept(CandidateResult result);
+
+	@Override default void close() throws IOException {
+	}
+
+	/**
+	 * @return a sink that gives each result to all the sinks
+	 */
+	static ResultSink all(List<ResultSink> sinks) {
+		List<ResultSink> copy = ImmutableList.copyOf(sinks);
+
+		return new ResultSink() {
+			@Override public void accept(CandidateResult result) {
+				copy.forEach(sink -> sink.accept(result));
+			}
+
+			@Override public void close() throws IOException {
+				for (ResultSink sink : copy)
+					sink.close();
+			}
+		};
+	}
+
+	/**
+	 * @return a sink that writes the results to a file, one per line as {@link CandidateResult#read} reads them
+	 */
+	static ResultSink tsv(File resultsFile) throws IOException {
+		File parent = resultsFile.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+
+		BufferedWriter writer = Files.newBufferedWriter(resultsFile.toPath(), StandardCharsets.UTF_8);
+
+		return new ResultSink() {
+			@Override public synchronized void accept(CandidateResult result) {
+				try {
+					writer.write(result.format());
+					writer.newLine();
+				} catch (IOException e) {
+					throw new UncheckedIOException("Cannot write the results to " + resultsFile, e);
+				}
+			}
+
+			@Override public synchronized void close() throws IOException {
+				writer.close();
+			}
+		};
+	}
+}
@@ -0,0 +1,144 @@
+package com.medallia.codefixer;
+
+import java.io.PrintStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+/**
+ * Keeps the aggregates of a search shown at its end, with a memory use that does not depend on the number of
+ * candidates: the number of candidates for each failure count, up to a limit of examples for each of them (and for
+ * the successes and the candidates that timed out) and the failing candidates with the fewest failures.
+ */
+public class ResultSummary implements ResultSink {
+	/** The order of the candidates in the candidate space, the order of the exhaustive search */
+	private static final Comparator<CandidateResult> SPACE_ORDER = Comparator.comparing(CandidateResult::getOptions, Ints.lexicographicalComparator());
+	/** The candidates with fewer failures first, in the order of the candidate space when they have the same failures */
+	private static final Comparator<CandidateResult> BEST_FIRST = Comparator.comparingInt(CandidateResult::getFailureCount).thenComparing(SPACE_ORDER);
+
+	private final int examples;
+	private final int best;
+
+	private final Map<Integer, Group> failures = Maps.newTreeMap();
+	private final Group timeouts = new Group();
+	private final Group successes = new Group();
+	/** The best failing candidates, with the worst of them at the head */
+	private final PriorityQueue<CandidateResult> bestFailures;
+	private long count;
+	private long resolvedFromCoverage;
+
+	/**
+	 * @param examples the number of candidates kept for each failure count, for the successes and for the timeouts
+	 * @param best the number of failing candidates with the fewest failures to keep
+	 */
+	public ResultSummary(int examples, int best) {
+		this.examples = examples;
+		this.best = best;
+		bestFailures = new PriorityQueue<>(Math.max(1, best), BEST_FIRST.reversed());
+	}
+
+	@Override public synchronized void accept(CandidateResult result) {
+		count++;
+		if (result.getExecutedCount() == 0)
+			resolvedFromCoverage++;
+
+		if (result.isTimedOut())
+			timeouts.add(result);
+		else if (result.wasSuccessful())
+			successes.add(result);
+		else {
+			failures.computeIfAbsent(result.getFailureCount(), failureCount -> new Group()).add(result);
+
+			if (best > 0) {
+				bestFailures.add(result);
+				if (bestFailures.size() > best)
+					bestFailures.poll();
+			}
+		}
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized long getSuccessCount() {
+		return successes.count;
+	}
+
+	/** @return the number of candidates resolved from the coverage of previous ones, without running any test */
+	public synchronized long getResolvedFromCoverage() {
+		return resolvedFromCoverage;
+	}
+
+	/**
+	 * Shows the candidates that failed, grouped by their number of failures, and the ones that timed out
+	 * @param failFast true if the candidates stopped at their first failing test
+	 * @param timeout the time a candidate could run, or 0 if it is not known
+	 */
+	public synchronized void printFailures(PrintStream out, boolean failFast, long timeout) {
+		if (failFast && !failures.isEmpty())
+			out.println("\nCandidates stop at their first failing test, use --all-failures to count all the failures");
+
+		failures.forEach((failureCount, group) -> {
+			out.println(failFast ? "\n-- Cases that failed" : String.format("\n-- Cases with %s", failureCount));
+			if ((failureCount <= 2 && !failFast) || group.count < 10)
+				group.print(out, result -> String.format("%s -> It has %s failures out of %s runs in %s ms",
+						result, result.getFailureCount(), result.getRunCount(), result.getRunTime()));
+			else
+				out.println("There are " + group.count);
+		});
+
+		if (timeouts.count > 0) {
+			out.println(timeout > 0 ? String.format("\n-- Cases that timed out after %s ms", timeout) : "\n-- Cases that timed out");
+			if (timeouts.count < 10)
+				timeouts.print(out, result -> String.format("%s -> Timed out after %s ms", result, result.getRunTime()));
+			else
+				out.println("There are " + timeouts.count);
+		}
+	}
+
+	/**
+	 * Shows the successful candidates, or the failing ones with the fewest failures if there are none
+	 * @param failFast true if the candidates stopped at their first failing test, they cannot be ranked by failures
+	 */
+	public synchronized void printSuccesses(PrintStream out, boolean failFast) {
+		if (successes.count > 0) {
+			successes.print(out, result -> "   Worked !!!  -> " + result);
+			return;
+		}
+
+		out.println("Oops, sorry, we could find a successful option");
+
+		if (failFast)
+			out.println("Use --all-failures to see the candidates with the fewest failures");
+		else if (!bestFailures.isEmpty()) {
+			out.println(String.format("\n-- The %s candidates with the fewest failures", bestFailures.size()));
+			bestFailures.stream().sorted(BEST_FIRST)
+				.forEach(result -> out.println(String.format("%s -> It has %s failures out of %s runs", result, result.getFailureCount(), result.getRunCount())));
+		}
+	}
+
+	/** The candidates with the same outcome: how many they are and the first ones */
+	private class Group {
+		long count;
+		final List<CandidateResult> examples = Lists.newArrayList();
+
+		void add(CandidateResult result) {
+			count++;
+			if (examples.size() < ResultSummary.this.examples)
+				examples.add(result);
+		}
+
+		void print(PrintStream out, Function<CandidateResult, String> formatter) {
+			examples.stream().sorted(SPACE_ORDER).map(formatter).forEach(out::println);
+			if (count > examples.size())
+				out.println(String.format("... and %s more", count - examples.size()));
+		}
+	}
+}
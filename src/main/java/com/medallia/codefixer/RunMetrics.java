@@ -0,0 +1,316 @@
+package com.medallia.codefixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Measures a run of the fixer: the time spent in each phase (generation, compilation, baseline and search) and the
+ * progress of the search, that can be followed through JMX while it runs.
+ * <br/>
+ * The candidates are written as they are checked, as JSON ({@link #jsonSink}, followed by the summary of the run) or
+ * CSV ({@link #csvSink}, a line per candidate). Only aggregates are kept in memory: the counters and the number of
+ * candidates for each run time (in ms, so they are bounded by the timeout). The candidates can be recorded from
+ * several workers at the same time.
+ */
+public class RunMetrics implements RunProgressMXBean, ResultSink {
+	static final String OBJECT_NAME = "com.medallia.codefixer:type=RunProgress";
+
+	private static final double[] PERCENTILES = {50, 90, 99};
+
+	private final Map<String, Long> phases = Collections.synchronizedMap(Maps.newLinkedHashMap());
+	private final Map<String, Object> settings = Collections.synchronizedMap(Maps.newLinkedHashMap());
+	private final AtomicLong checked = new AtomicLong();
+	private final AtomicLong successes = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong resolvedFromCoverage = new AtomicLong();
+	private final AtomicLong testTime = new AtomicLong();
+	/** The number of candidates by their run time */
+	private final TreeMap<Long, Long> runTimes = Maps.newTreeMap();
+
+	private volatile List<Integer> hotSpots = Collections.emptyList();
+	private volatile long expectedCandidates = -1;
+	private volatile long searchStartTime;
+	private volatile long searchEndTime;
+
+	/**
+	 * @param phase the name of the phase, for example "generation"
+	 * @param time the time spent in the phase in ms
+	 */
+	public void recordPhase(String phase, long time) {
+		phases.merge(phase, time, Long::sum);
+	}
+
+	/** @param value a setting of the run, shown with the results (for example the strategy or the number of workers) */
+	public void setting(String name, Object value) {
+		settings.put(name, value);
+	}
+
+	/** @param hotSpots the hot spot of each selector, in the order of the option vectors */
+	public void setHotSpots(List<Integer> hotSpots) {
+		this.hotSpots = hotSpots;
+	}
+
+	/** @param expectedCandidates the number of candidates the search checks at most, or -1 if it is not known */
+	public void startSearch(long expectedCandidates) {
+		this.expectedCandidates = expectedCandidates;
+		searchStartTime = System.currentTimeMillis();
+	}
+
+	public void endSearch() {
+		searchEndTime = System.currentTimeMillis();
+		recordPhase("search", searchEndTime - searchStartTime);
+	}
+
+	/** Called with the result of each candidate checked */
+	@Override public void accept(CandidateResult result) {
+		checked.incrementAndGet();
+		if (result.wasSuccessful())
+			successes.incrementAndGet();
+		if (result.isTimedOut())
+			timeouts.incrementAndGet();
+		if (result.getExecutedCount() == 0)
+			resolvedFromCoverage.incrementAndGet();
+		testTime.addAndGet(result.getRunTime());
+
+		synchronized (runTimes) {
+			runTimes.merge(result.getRunTime(), 1L, Long::sum);
+		}
+	}
+
+	/**
+	 * Publishes the progress of the search through JMX, replacing the one of a previous run in the same JVM
+	 */
+	public void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name))
+				server.unregisterMBean(name);
+
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register the run progress MBean", e);
+		}
+	}
+
+	@Override public long getCheckedCandidates() {
+		return checked.get();
+	}
+
+	@Override public long getExpectedCandidates() {
+		return expectedCandidates;
+	}
+
+	@Override public long getSuccessCount() {
+		return successes.get();
+	}
+
+	@Override public long getTimedOutCount() {
+		return timeouts.get();
+	}
+
+	@Override public double getElapsedSeconds() {
+		if (searchStartTime == 0)
+			return 0;
+
+		return ((searchEndTime > 0 ? searchEndTime : System.currentTimeMillis()) - searchStartTime) / 1000.0;
+	}
+
+	@Override public double getCandidatesPerSecond() {
+		double elapsed = getElapsedSeconds();
+
+		return elapsed > 0 ? checked.get() / elapsed : 0;
+	}
+
+	@Override public double getEstimatedSecondsLeft() {
+		double speed = getCandidatesPerSecond();
+		if (expectedCandidates < 0 || speed == 0)
+			return -1;
+
+		return Math.max(0, expectedCandidates - checked.get()) / speed;
+	}
+
+	/**
+	 * @return a sink that writes each candidate (options, outcome, failures, run time and selector hits) and, when it
+	 * is closed, the summary of the run (settings, phases, throughput and percentiles of the candidate run time)
+	 */
+	public ResultSink jsonSink(File file) throws IOException {
+		Gson gson = new Gson();
+		JsonWriter writer = new JsonWriter(newWriter(file));
+		writer.beginObject();
+		writer.name("candidates").beginArray();
+
+		return new ResultSink() {
+			@Override public synchronized void accept(CandidateResult result) {
+				JsonObject candidate = new JsonObject();
+				candidate.add("options", toJson(Ints.asList(result.getOptions())));
+				candidate.add("namedOptions", toJson(Arrays.asList(result.getNamedOptions())));
+				candidate.addProperty("outcome", outcomeOf(result));
+				candidate.addProperty("failures", result.getFailureCount());
+				candidate.addProperty("runs", result.getRunCount());
+				candidate.addProperty("executed", result.getExecutedCount());
+				candidate.addProperty("runTimeMs", result.getRunTime());
+				candidate.addProperty("timedOut", result.isTimedOut());
+				candidate.add("selectorHits", toJson(Longs.asList(result.getSelectorHits())));
+
+				gson.toJson(candidate, writer);
+			}
+
+			@Override public synchronized void close() throws IOException {
+				writer.endArray();
+				for (Map.Entry<String, JsonElement> entry : summary().entrySet()) {
+					writer.name(entry.getKey());
+					gson.toJson(entry.getValue(), writer);
+				}
+				writer.endObject();
+				writer.close();
+			}
+		};
+	}
+
+	private JsonObject summary() {
+		JsonObject run = new JsonObject();
+
+		JsonObject settingsJson = new JsonObject();
+		synchronized (settings) {
+			settings.forEach((name, value) -> settingsJson.add(name, primitive(value)));
+		}
+		run.add("settings", settingsJson);
+
+		JsonObject phasesJson = new JsonObject();
+		synchronized (phases) {
+			phases.forEach((phase, time) -> phasesJson.addProperty(phase + "Ms", time));
+		}
+		run.add("phases", phasesJson);
+
+		JsonObject summary = new JsonObject();
+		summary.addProperty("candidates", checked.get());
+		summary.addProperty("successes", successes.get());
+		summary.addProperty("timeouts", timeouts.get());
+		summary.addProperty("resolvedFromCoverage", resolvedFromCoverage.get());
+		summary.addProperty("candidatesPerSecond", getCandidatesPerSecond());
+		summary.addProperty("testTimeMs", testTime.get());
+		run.add("summary", summary);
+
+		JsonObject runTime = new JsonObject();
+		synchronized (runTimes) {
+			for (double percentile : PERCENTILES)
+				runTime.addProperty("p" + (int) percentile, percentile(runTimes, percentile));
+			runTime.addProperty("max", runTimes.isEmpty() ? 0 : runTimes.lastKey());
+		}
+		runTime.addProperty("mean", checked.get() == 0 ? 0 : (double) testTime.get() / checked.get());
+		run.add("runTimeMs", runTime);
+
+		JsonArray hotSpotsJson = new JsonArray();
+		hotSpots.forEach(hotSpot -> hotSpotsJson.add(new JsonPrimitive(hotSpot)));
+		run.add("hotSpots", hotSpotsJson);
+
+		return run;
+	}
+
+	/**
+	 * @return a sink that writes a line per candidate: the options, the outcome, the failures, the run time and the
+	 * hits of each selector (a column per hot spot, empty if they are not known)
+	 */
+	public ResultSink csvSink(File file) throws IOException {
+		List<Integer> hotSpots = this.hotSpots;
+		Writer writer = newWriter(file);
+
+		List<String> header = Lists.newArrayList("options", "named_options", "outcome", "failures", "runs", "executed", "run_time_ms", "timed_out");
+		hotSpots.forEach(hotSpot -> header.add("hits_" + hotSpot));
+		writer.write(Joiner.on(',').join(header));
+		writer.write('\n');
+
+		return new ResultSink() {
+			@Override public synchronized void accept(CandidateResult result) {
+				List<Object> fields = Lists.newArrayList(Ints.join(" ", result.getOptions()), Joiner.on(' ').join(result.getNamedOptions()),
+					outcomeOf(result), result.getFailureCount(), result.getRunCount(), result.getExecutedCount(), result.getRunTime(), result.isTimedOut());
+				for (int i = 0; i < hotSpots.size(); i++)
+					fields.add(i < result.getSelectorHits().length ? String.valueOf(result.getSelectorHits()[i]) : "");
+
+				try {
+					writer.write(Joiner.on(',').join(fields));
+					writer.write('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException("Cannot write the candidates to " + file, e);
+				}
+			}
+
+			@Override public synchronized void close() throws IOException {
+				writer.close();
+			}
+		};
+	}
+
+	private static String outcomeOf(CandidateResult result) {
+		return result.isTimedOut() ? "timeout" : result.wasSuccessful() ? "success" : "failure";
+	}
+
+	/**
+	 * @param counts the number of times each value was found, in increasing order of the values
+	 * @return the nearest rank percentile of the values
+	 */
+	static long percentile(Map<Long, Long> counts, double percentile) {
+		long total = counts.values().stream().mapToLong(Long::longValue).sum();
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+
+		long seen = 0;
+		for (Map.Entry<Long, Long> count : counts.entrySet()) {
+			seen += count.getValue();
+			if (seen >= rank)
+				return count.getKey();
+		}
+
+		return 0;
+	}
+
+	private static JsonArray toJson(List<?> values) {
+		JsonArray array = new JsonArray();
+		values.forEach(value -> array.add(primitive(value)));
+		return array;
+	}
+
+	private static JsonPrimitive primitive(Object value) {
+		if (value instanceof Number)
+			return new JsonPrimitive((Number) value);
+		if (value instanceof Boolean)
+			return new JsonPrimitive((Boolean) value);
+
+		return new JsonPrimitive(String.valueOf(value));
+	}
+
+	private static Writer newWriter(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+
+		return Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,25 @@
+package com.medallia.codefixer;
+
+/**
+ * The progress of a running search, published through JMX (see {@link RunMetrics#registerMBean()}) as
+ * "com.medallia.codefixer:type=RunProgress".
+ */
+public interface RunProgressMXBean {
+
+	long getCheckedCandidates();
+
+	/** @return the number of candidates the search checks at most, or -1 if it is not known */
+	long getExpectedCandidates();
+
+	long getSuccessCount();
+
+	long getTimedOutCount();
+
+	/** @return the time since the search started in seconds */
+	double getElapsedSeconds();
+
+	double getCandidatesPerSecond();
+
+	/** @return the time left to check the expected candidates at the current speed in seconds, or -1 if it is not known */
+	double getEstimatedSecondsLeft();
+}
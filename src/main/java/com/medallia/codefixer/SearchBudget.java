@@ -0,0 +1,52 @@
+package com.medallia.codefixer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits a search by the number of candidates, the time spent or the number of successful candidates found.
+ * <br/>
+ * It can be shared by several workers.
+ */
+public class SearchBudget {
+	private final long maxCandidates;
+	private final long deadline;
+	private final int maxSuccesses;
+
+	private final AtomicLong started = new AtomicLong();
+	private final AtomicInteger successes = new AtomicInteger();
+
+	/**
+	 * @param maxCandidates the maximum number of candidates to check
+	 * @param maxTime the maximum time for the search in ms
+	 * @param maxSuccesses the search stops after this number of successful candidates
+	 */
+	public SearchBudget(long maxCandidates, long maxTime, int maxSuccesses) {
+		this.maxCandidates = maxCandidates;
+		long now = System.currentTimeMillis();
+		this.deadline = maxTime > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + maxTime;
+		this.maxSuccesses = maxSuccesses;
+	}
+
+	/**
+	 * Counts a new candidate if the budget allows it
+	 * @return true if the candidate can be checked, false if the search should stop
+	 */
+	public boolean tryStart() {
+		if (isExhausted())
+			return false;
+
+		return started.incrementAndGet() <= maxCandidates;
+	}
+
+	/** @return true if there is no more time or enough successful candidates were found */
+	public boolean isExhausted() {
+		return successes.get() >= maxSuccesses || System.currentTimeMillis() > deadline;
+	}
+
+	/** @param result the result of a candidate checked */
+	public void record(CandidateResult result) {
+		if (result.wasSuccessful())
+			successes.incrementAndGet();
+	}
+}
@@ -0,0 +1,40 @@
+package com.medallia.codefixer;
+
+import java.util.List;
+
+/**
+ * Decides which option vectors are checked, and in which order.
+ * <br/>
+ * The option vectors are not required to be distinct. The strategy gets the result of each candidate, it could be
+ * called from several workers at the same time.
+ */
+public interface SearchStrategy extends Iterable<int[]> {
+
+	/**
+	 * Called with the result of each candidate checked
+	 * @param result the result of one of the option vectors this strategy produced
+	 */
+	default void onResult(CandidateResult result) {
+	}
+
+	/**
+	 * @param name one of "exhaustive", "single-first", "pairwise" or "guided"
+	 * @param sizes the number of variants for each selector
+	 * @param seed the seed for the strategies that make random choices
+	 * @return the strategy with the given name
+	 */
+	static SearchStrategy named(String name, List<Integer> sizes, long seed) {
+		switch (name) {
+			case "exhaustive":
+				return new ExhaustiveSearch(sizes);
+			case "single-first":
+				return new MutationDistanceSearch(sizes, sizes.size());
+			case "pairwise":
+				return new MutationDistanceSearch(sizes, 2);
+			case "guided":
+				return new GuidedSearch(sizes, seed);
+			default:
+				throw new IllegalArgumentException("Unknown search strategy " + name);
+		}
+	}
+}
@@ -5,23 +5,46 @@ import java.util.Map;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 /**
  * A selector selects one of the variants for a given hot spot
  */
-public class Selector {
-	private static final Map<Integer, Selector> selectors = Maps.newHashMap();
+public class Selector implements SelectorControl {
+	/** The selectors by hot spot id, in order so the option vectors are always in the same order */
+	private static final Map<Integer, Selector> selectors = Maps.newTreeMap();
+
+	/** The codes of the comparison operators, used by {@code compare} to apply the chosen variant */
+	private static final int EQ = 0;
+	private static final int NE = 1;
+	private static final int LT = 2;
+	private static final int LE = 3;
+	private static final int GT = 4;
+	private static final int GE = 5;
+	private static final int NO_OPERATOR = -1;
+	private static final Map<String, Integer> OPERATOR_CODES = ImmutableMap.<String, Integer>builder()
+		.put("EQ", EQ).put("NE", NE).put("LT", LT).put("LE", LE).put("GT", GT).put("GE", GE)
+		.build();
 
 	private final int hotSpot;
 	private final String[] variants;
+	private final int[] operators;
 
 	private int chosenVariant = -1; // TODO ser default base on original source
+	private int chosenOperator = NO_OPERATOR;
 	private long stopTime;
+	private volatile boolean stopRequested;
+	private boolean reached;
+	private long hitCount;
 
 	public Selector(int hotSpot, String[] variants) {
 		this.hotSpot = hotSpot;
 		this.variants = variants;
+		this.operators = new int[variants.length];
+
+		for (int i = 0; i < variants.length; i++)
+			operators[i] = OPERATOR_CODES.getOrDefault(variants[i], NO_OPERATOR);
 	}
 
 	public static Selector of(int hotSpot, String ... variants) {
@@ -32,17 +55,122 @@ public class Selector {
 		return selector;
 	}
 
-	public void choose(int option) {
+	@Override public int getHotSpot() {
+		return hotSpot;
+	}
+
+	@Override public void choose(int option) {
 		chosenVariant = option;
+		chosenOperator = option >= 0 && option < operators.length ? operators[option] : NO_OPERATOR;
 	}
 
+	/**
+	 * Checks the chosen variant by its index. This is the check emitted by {@link MetaProgramGenerator}, it does not
+	 * compare strings nor read the clock: the timeout is signaled by the watchdog through {@link #setStopRequested}.
+	 * @param variant the index of the variant in this selector
+	 * @return true if the given variant is the chosen one
+	 */
+	public boolean is(int variant) {
+		if (stopRequested)
+			throw new StopTimeExceededError("In selector " + hotSpot + " with option " + chosenVariant + " checking for " + variant);
+
+		reached = true;
+		hitCount++;
+		return chosenVariant == variant;
+	}
+
+	/**
+	 * Checks the chosen variant by its name. Kept for meta-programs generated before variants were checked by index.
+	 * @param variant the name of the variant
+	 * @return true if the given variant is the chosen one
+	 */
 	public boolean is(String variant) {
-		if (System.currentTimeMillis() > stopTime)
+		if (stopRequested || (stopTime > 0 && System.currentTimeMillis() > stopTime))
 			throw new StopTimeExceededError("In selector " + hotSpot + " with option " + chosenVariant + " checking for " + variant);
 
+		reached = true;
+		hitCount++;
 		return chosenVariant >= 0 && variants[chosenVariant].equals(variant);
 	}
 
+	/**
+	 * Compares two numbers with the chosen operator. This is the check emitted by {@link MetaProgramGenerator} in
+	 * dispatch mode, each operand is evaluated only once by the meta-program.
+	 */
+	public boolean compare(long a, long b) {
+		switch (reachOperator()) {
+			case EQ: return a == b;
+			case NE: return a != b;
+			case LT: return a < b;
+			case LE: return a <= b;
+			case GT: return a > b;
+			case GE: return a >= b;
+			default: throw unsupportedOperator();
+		}
+	}
+
+	/** @see #compare(long, long) */
+	public boolean compare(int a, int b) {
+		switch (reachOperator()) {
+			case EQ: return a == b;
+			case NE: return a != b;
+			case LT: return a < b;
+			case LE: return a <= b;
+			case GT: return a > b;
+			case GE: return a >= b;
+			default: throw unsupportedOperator();
+		}
+	}
+
+	/** @see #compare(long, long) */
+	public boolean compare(double a, double b) {
+		switch (reachOperator()) {
+			case EQ: return a == b;
+			case NE: return a != b;
+			case LT: return a < b;
+			case LE: return a <= b;
+			case GT: return a > b;
+			case GE: return a >= b;
+			default: throw unsupportedOperator();
+		}
+	}
+
+	/** @see #compare(long, long) */
+	public boolean compare(float a, float b) {
+		return compare((double) a, (double) b);
+	}
+
+	/** Compares two booleans with the chosen operator (only == and !=) */
+	public boolean compare(boolean a, boolean b) {
+		switch (reachOperator()) {
+			case EQ: return a == b;
+			case NE: return a != b;
+			default: throw unsupportedOperator();
+		}
+	}
+
+	/** Compares two references with the chosen operator (only == and !=) */
+	public boolean compare(Object a, Object b) {
+		switch (reachOperator()) {
+			case EQ: return a == b;
+			case NE: return a != b;
+			default: throw unsupportedOperator();
+		}
+	}
+
+	private int reachOperator() {
+		if (stopRequested)
+			throw new StopTimeExceededError("In selector " + hotSpot + " with option " + chosenVariant);
+
+		reached = true;
+		hitCount++;
+		return chosenOperator;
+	}
+
+	private IllegalStateException unsupportedOperator() {
+		return new IllegalStateException("Selector " + hotSpot + " cannot compare with " + getChosenOptionDescription());
+	}
+
 	@Override public String toString() {
 		return MoreObjects.toStringHelper(this)
 			.add("chosenVariant", chosenVariant)
@@ -55,16 +183,40 @@ public class Selector {
 		return ImmutableList.copyOf(selectors.values());
 	}
 
-	public int getOptionCount() {
+	@Override public int getOptionCount() {
 		return variants.length;
 	}
 
+	@Override public boolean wasReached() {
+		return reached;
+	}
+
+	@Override public void resetReached() {
+		reached = false;
+	}
+
+	@Override public long getHitCount() {
+		return hitCount;
+	}
+
+	@Override public void resetHitCount() {
+		hitCount = 0;
+	}
+
+	@Override public void setStopRequested(boolean stopRequested) {
+		this.stopRequested = stopRequested;
+	}
+
+	/**
+	 * @param stopTime the time after which {@link #is(String)} aborts the candidate. Meta-programs checking the variants
+	 * by index are stopped through {@link #setStopRequested} instead.
+	 */
 	public void setStopTime(long stopTime) {
 
 		this.stopTime = stopTime;
 	}
 
-	public String getChosenOptionDescription() {
+	@Override public String getChosenOptionDescription() {
 		if ((chosenVariant >= 0) && (chosenVariant < variants.length)) {
 			return variants[chosenVariant];
 		} else {
@@ -72,6 +224,10 @@ public class Selector {
 		}
 	}
 
+	@Override public String getOptionDescription(int option) {
+		return variants[option];
+	}
+
 	public static class StopTimeExceededError extends RuntimeException {   // TODO THis can be cached !!
 
 		public StopTimeExceededError(String message) {
@@ -0,0 +1,39 @@
+package com.medallia.codefixer;
+
+/**
+ * The view of a {@link Selector} used by the fixer to drive the meta-program.
+ * <br/>
+ * It is loaded by the fixer class loader, so it can be used to control selectors that were loaded by an
+ * isolated class loader (see {@link IsolatingClassLoader}).
+ */
+public interface SelectorControl {
+	/** @return the hot spot this selector controls */
+	int getHotSpot();
+
+	/** @return the number of variants this selector can choose from */
+	int getOptionCount();
+
+	/** @param option the index of the variant to use from now on */
+	void choose(int option);
+
+	/** @return true if the program checked this selector since the last {@link #resetReached()} */
+	boolean wasReached();
+
+	/** Forgets whether the selector was reached */
+	void resetReached();
+
+	/** @return the number of times the program checked this selector since the last {@link #resetHitCount()} */
+	long getHitCount();
+
+	/** Sets the hit count back to 0 */
+	void resetHitCount();
+
+	/** @param stopRequested true to make the running candidate fail the next time it reaches this selector */
+	void setStopRequested(boolean stopRequested);
+
+	/** @return the name of the chosen variant or "n/a" if none was chosen */
+	String getChosenOptionDescription();
+
+	/** @return the name of the given variant */
+	String getOptionDescription(int option);
+}
@@ -0,0 +1,49 @@
+package com.medallia.codefixer;
+
+/**
+ * The program spectrum at the hot spots level: for each selector, how many passing and failing tests reached it.
+ * <br/>
+ * It ranks the hot spots by suspiciousness, the expressions reached mostly by failing tests are the most likely to
+ * contain the bug.
+ */
+public class Spectrum implements CoverageRecorder {
+	private final int[] passedBy;
+	private final int[] failedBy;
+	private int totalPassed;
+	private int totalFailed;
+
+	/** @param selectorCount the number of selectors in the meta-program */
+	public Spectrum(int selectorCount) {
+		passedBy = new int[selectorCount];
+		failedBy = new int[selectorCount];
+	}
+
+	@Override public synchronized void record(String test, int[] reached, int[] options, boolean passed) {
+		int[] counts = passed ? passedBy : failedBy;
+
+		for (int selector : reached)
+			counts[selector]++;
+
+		if (passed)
+			totalPassed++;
+		else
+			totalFailed++;
+	}
+
+	public synchronized int getTotalFailed() {
+		return totalFailed;
+	}
+
+	/** @return the Ochiai suspiciousness of the selector: failed(s) / sqrt(totalFailed * (failed(s) + passed(s))) */
+	public synchronized double ochiai(int selector) {
+		double denominator = Math.sqrt((double) totalFailed * (failedBy[selector] + passedBy[selector]));
+		return denominator == 0 ? 0 : failedBy[selector] / denominator;
+	}
+
+	/** @return the Tarantula suspiciousness of the selector: %failed(s) / (%failed(s) + %passed(s)) */
+	public synchronized double tarantula(int selector) {
+		double failedRatio = totalFailed == 0 ? 0 : (double) failedBy[selector] / totalFailed;
+		double passedRatio = totalPassed == 0 ? 0 : (double) passedBy[selector] / totalPassed;
+		return failedRatio + passedRatio == 0 ? 0 : failedRatio / (failedRatio + passedRatio);
+	}
+}
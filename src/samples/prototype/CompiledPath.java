@@ -0,0 +1,69 @@
+package prototype;
+
+import java.util.List;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.primitives.Ints;
+
+/**
+ * A field path (see {@link ObjectTreeNavigator}) split into its steps once, so it can be followed many times without
+ * parsing it again.
+ * <br/>
+ * Each step is the name of a field in an object or the index of an element in an array, depending on the element
+ * found when following the path, so the steps that are numbers are also kept as indexes. A compiled path is immutable
+ * and can be shared by threads.
+ */
+public final class CompiledPath {
+	/** The dots and brackets separate the steps, the empty steps are ignored */
+	private static final Splitter STEP_SPLITTER = Splitter.on(CharMatcher.anyOf(".[]")).omitEmptyStrings();
+
+	private final String fieldPath;
+	private final String[] names;
+	/** The index of each step, or null if the step is not a number */
+	private final Integer[] indexes;
+
+	private CompiledPath(String fieldPath, List<String> steps) {
+		this.fieldPath = fieldPath;
+		names = steps.toArray(new String[steps.size()]);
+		indexes = new Integer[names.length];
+
+		// Not Integer.parseInt: an exception for each name would make compiling a path much slower than following it
+		for (int step = 0; step < names.length; step++)
+			indexes[step] = Ints.tryParse(names[step]);
+	}
+
+	/**
+	 * Compiles a path, to keep it where it is used. The paths are not cached, the callers that follow a path many times
+	 * keep it compiled.
+	 * @param fieldPath the path to compile
+	 * @return the compiled path
+	 */
+	public static CompiledPath compile(String fieldPath) {
+		return new CompiledPath(fieldPath, STEP_SPLITTER.splitToList(fieldPath));
+	}
+
+	/** @return the number of steps of the path */
+	public int size() {
+		return names.length;
+	}
+
+	/** @return the name of the field for the step */
+	public String name(int step) {
+		return names[step];
+	}
+
+	/**
+	 * @return the index of the array element for the step
+	 * @throws NumberFormatException if the step is not a number
+	 */
+	public int index(int step) {
+		Integer index = indexes[step];
+		return index == null ? Integer.parseInt(names[step]) : index;
+	}
+
+	/** @return the path as it was written */
+	@Override public String toString() {
+		return fieldPath;
+	}
+}
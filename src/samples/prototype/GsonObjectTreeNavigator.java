@@ -1,9 +1,15 @@
 package prototype;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
@@ -15,9 +21,11 @@ import com.google.gson.JsonObject;
 
 /**
  * {@link ObjectTreeNavigator} for a Gson representation of a Json tree ({@link JsonElement}
+ * <br/>
+ * The paths given as strings are compiled each time they are followed, the paths followed many times should be
+ * compiled once (see {@link CompiledPath#compile}).
  */
 public class GsonObjectTreeNavigator implements ObjectTreeNavigator {
-	private static final Pattern PATH_SPLITTER_PATTERN = Pattern.compile("\\.*\\[|\\]\\.*|\\.+");
 	private JsonElement tree;
 
 	/**
@@ -35,32 +43,98 @@ public class GsonObjectTreeNavigator implements ObjectTreeNavigator {
 
 	@Override
 	public String getString(String fieldPath, String defaultValue) {
-		JsonElement current = getJsonElement(fieldPath);
+		return getString(CompiledPath.compile(fieldPath), defaultValue);
+	}
+
+	@Override
+	public String getString(CompiledPath fieldPath) {
+		return getString(fieldPath, null);
+	}
 
+	@Override
+	public String getString(CompiledPath fieldPath, String defaultValue) {
+		return stringOf(getJsonElement(fieldPath), defaultValue);
+	}
+
+	/** @return the value of an element found following a path, as {@link #getString(String, String)} returns it */
+	static String stringOf(JsonElement current, String defaultValue) {
 		// I couldn't find it, return default value
 		return current == null ? defaultValue : (current.isJsonNull() ? null : (current.isJsonPrimitive() ? current.getAsString() : current.toString()));
 	}
 
 	@Override
 	public ObjectTreeNavigator getNavigator(String fieldPath) {
-		JsonElement current = getJsonElement(fieldPath);
+		return getNavigator(CompiledPath.compile(fieldPath));
+	}
 
+	@Override
+	public ObjectTreeNavigator getNavigator(CompiledPath fieldPath) {
+		return navigatorOf(getJsonElement(fieldPath));
+	}
+
+	static ObjectTreeNavigator navigatorOf(JsonElement current) {
 		return current == null ? null : new GsonObjectTreeNavigator(current);
 	}
 
 	@Override
 	public Iterable<ObjectTreeNavigator> getIterable(String fieldPath) {
-		final JsonElement current = getJsonElement(fieldPath);
+		return getIterable(CompiledPath.compile(fieldPath));
+	}
+
+	@Override
+	public Iterable<ObjectTreeNavigator> getIterable(CompiledPath fieldPath) {
+		return iterableOf(getJsonElement(fieldPath), false);
+	}
+
+	@Override
+	public Iterable<ObjectTreeNavigator> getCursor(String fieldPath) {
+		return getCursor(CompiledPath.compile(fieldPath));
+	}
 
+	@Override
+	public Iterable<ObjectTreeNavigator> getCursor(CompiledPath fieldPath) {
+		return iterableOf(getJsonElement(fieldPath), true);
+	}
+
+	/**
+	 * @param reuse true to return the same navigator for all the elements (see {@link #getCursor(String)})
+	 */
+	private static Iterable<ObjectTreeNavigator> iterableOf(final JsonElement current, final boolean reuse) {
 		return new Iterable<ObjectTreeNavigator>() {
 			@Override public Iterator<ObjectTreeNavigator> iterator() {
 				return current == null
 						? Collections.<ObjectTreeNavigator>emptyIterator()
-						: getIteratorForArray((JsonArray) current);
+						: getIteratorForArray((JsonArray) current, reuse);
 			}
 		};
 	}
 
+	@Override
+	public Spliterator<ObjectTreeNavigator> getSpliterator(String fieldPath) {
+		return getSpliterator(CompiledPath.compile(fieldPath));
+	}
+
+	@Override
+	public Spliterator<ObjectTreeNavigator> getSpliterator(CompiledPath fieldPath) {
+		JsonElement current = getJsonElement(fieldPath);
+		if (current == null)
+			return Spliterators.emptySpliterator();
+
+		Preconditions.checkArgument(current.isJsonArray(), fieldPath + " is not an array");
+
+		return new JsonArraySpliterator((JsonArray) current);
+	}
+
+	@Override
+	public Stream<ObjectTreeNavigator> getStream(String fieldPath) {
+		return getStream(CompiledPath.compile(fieldPath));
+	}
+
+	@Override
+	public Stream<ObjectTreeNavigator> getStream(CompiledPath fieldPath) {
+		return StreamSupport.stream(getSpliterator(fieldPath), false);
+	}
+
 	@Override
 	public boolean isPrimitive() {
 		return tree.isJsonPrimitive();
@@ -78,71 +152,106 @@ public class GsonObjectTreeNavigator implements ObjectTreeNavigator {
 
 	/**
 	 * @param jsonArray the JSON array to decorate
+	 * @param reuse true to move a single navigator to each element instead of creating one for each of them
 	 * @return an {@link Iterable} that can iterate over the elements of the JSON array. The elements of the iterator
 	 */
-	private Iterator<ObjectTreeNavigator> getIteratorForArray(JsonArray jsonArray) {
+	private static Iterator<ObjectTreeNavigator> getIteratorForArray(JsonArray jsonArray, boolean reuse) {
+		if (!reuse) {
+			return Iterators.transform((jsonArray.iterator()), new Function<JsonElement, ObjectTreeNavigator>() {
+				@Override public ObjectTreeNavigator apply(JsonElement element) {
+					return new GsonObjectTreeNavigator(element);
+				}
+			});
+		}
+
+		final GsonObjectTreeNavigator cursor = new GsonObjectTreeNavigator(null);
 		return Iterators.transform((jsonArray.iterator()), new Function<JsonElement, ObjectTreeNavigator>() {
 			@Override public ObjectTreeNavigator apply(JsonElement element) {
-				return new GsonObjectTreeNavigator(element);
+				cursor.tree = element;
+				return cursor;
 			}
 		});
 	}
 
 	@Override
 	public Map<String, ObjectTreeNavigator> getFieldsForObject(String fieldPath) {
+		return getFieldsForObject(CompiledPath.compile(fieldPath));
+	}
+
+	@Override
+	public Map<String, ObjectTreeNavigator> getFieldsForObject(CompiledPath fieldPath) {
 		final JsonElement current = getJsonElement(fieldPath);
 		if (current == null)
 			return Collections.emptyMap();
 
 		Preconditions.checkArgument(current.isJsonObject(), fieldPath + " is not an object");
 
-		Map<String, ObjectTreeNavigator> fields = Maps.newHashMap();
-
-		for (Map.Entry<String, JsonElement> entry : ((JsonObject) current).entrySet()) {
-			fields.put(entry.getKey(), new GsonObjectTreeNavigator(entry.getValue()));
-		}
-
-		return  fields;
+		return new FieldsView((JsonObject) current);
 	}
 
 	@Override
 	public boolean getBoolean(String fieldPath) {
-		JsonElement current = getJsonElement(fieldPath);
+		return getBoolean(CompiledPath.compile(fieldPath));
+	}
+
+	@Override
+	public boolean getBoolean(CompiledPath fieldPath) {
+		return booleanOf(getJsonElement(fieldPath));
+	}
+
+	static boolean booleanOf(JsonElement current) {
 		return current == null ? false : current.getAsBoolean();
 	}
 
 	@Override
 	public int getInt(String fieldPath) {
-		JsonElement current = getJsonElement(fieldPath);
+		return getInt(CompiledPath.compile(fieldPath));
+	}
+
+	@Override
+	public int getInt(CompiledPath fieldPath) {
+		return intOf(getJsonElement(fieldPath));
+	}
+
+	static int intOf(JsonElement current) {
 		return current == null ? 0 : current.getAsInt();
 	}
 
 	@Override
 	public double getDouble(String fieldPath) {
-		JsonElement current = getJsonElement(fieldPath);
+		return getDouble(CompiledPath.compile(fieldPath));
+	}
+
+	@Override
+	public double getDouble(CompiledPath fieldPath) {
+		return doubleOf(getJsonElement(fieldPath));
+	}
+
+	static double doubleOf(JsonElement current) {
 		return current == null ? 0 : current.getAsDouble();
 	}
 
+	@Override
+	public PathBatch.Values getValues(PathBatch fieldPaths) {
+		return fieldPaths.resolve(tree);
+	}
+
 	/**
-	 * Navigates through the object tree following the given path.
+	 * Navigates through the object tree following the given path, without parsing it or creating any object.
 	 * @see ObjectTreeNavigator
 	 * @param fieldPath the path to follow to get the element.
 	 * @return the node found at the end of the path or null if a null node is reached in any level.
 	 * @throws IllegalArgumentException if a primitive value is found in the middle of the path (cannot go deeper)
 	 */
-	private JsonElement getJsonElement(String fieldPath) {
-		String[] pathElements = PATH_SPLITTER_PATTERN.split(fieldPath);
-
+	private JsonElement getJsonElement(CompiledPath fieldPath) {
 		JsonElement current = tree;
-		int last = pathElements.length - 1;
+		int last = fieldPath.size() - 1;
 
 		for (int pathIndex = 0; current != null && pathIndex <= last; pathIndex++) {
-			String pathElement = pathElements[pathIndex];
+			String pathElement = fieldPath.name(pathIndex);
 
-			if (pathElement.isEmpty()) {
-				// Skip missing path part
-			} else if (current.isJsonArray()) {
-				int index = Integer.parseInt(pathElement);
+			if (current.isJsonArray()) {
+				int index = fieldPath.index(pathIndex);
 				JsonArray jsonArray = (JsonArray) current;
 				current = index < jsonArray.size() ? jsonArray.get(index) : null;
 			} else if (current.isJsonObject()) {
@@ -159,4 +268,43 @@ public class GsonObjectTreeNavigator implements ObjectTreeNavigator {
 	@Override public String toString() {
 		return "GsonObjectTreeNavigator{" + tree + '}';
 	}
+
+	/**
+	 * The fields of an object as a read only map, the navigator of a field is created when it is read
+	 */
+	private static class FieldsView extends AbstractMap<String, ObjectTreeNavigator> {
+		private final JsonObject object;
+
+		FieldsView(JsonObject object) {
+			this.object = object;
+		}
+
+		@Override public ObjectTreeNavigator get(Object key) {
+			return key instanceof String ? navigatorOf(object.get((String) key)) : null;
+		}
+
+		@Override public boolean containsKey(Object key) {
+			return key instanceof String && object.has((String) key);
+		}
+
+		@Override public int size() {
+			return object.entrySet().size();
+		}
+
+		@Override public Set<Entry<String, ObjectTreeNavigator>> entrySet() {
+			return new AbstractSet<Entry<String, ObjectTreeNavigator>>() {
+				@Override public Iterator<Entry<String, ObjectTreeNavigator>> iterator() {
+					return Iterators.transform(object.entrySet().iterator(), new Function<Entry<String, JsonElement>, Entry<String, ObjectTreeNavigator>>() {
+						@Override public Entry<String, ObjectTreeNavigator> apply(Entry<String, JsonElement> field) {
+							return Maps.<String, ObjectTreeNavigator>immutableEntry(field.getKey(), new GsonObjectTreeNavigator(field.getValue()));
+						}
+					});
+				}
+
+				@Override public int size() {
+					return object.entrySet().size();
+				}
+			};
+		}
+	}
 }
@@ -0,0 +1,71 @@
+package prototype;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.google.gson.JsonArray;
+
+/**
+ * {@link Spliterator} for a range of the elements of a JSON array, each one as a new {@link GsonObjectTreeNavigator}.
+ * <br/>
+ * It is split in two halves of its range, so the array can be read by several threads of a parallel stream. The
+ * array is read by index and it is never modified, it should not be modified while it is read.
+ */
+final class JsonArraySpliterator implements Spliterator<ObjectTreeNavigator> {
+	private final JsonArray jsonArray;
+	/** The next element to return */
+	private int index;
+	/** The element after the last one of the range */
+	private final int end;
+
+	JsonArraySpliterator(JsonArray jsonArray) {
+		this(jsonArray, 0, jsonArray.size());
+	}
+
+	private JsonArraySpliterator(JsonArray jsonArray, int index, int end) {
+		this.jsonArray = jsonArray;
+		this.index = index;
+		this.end = end;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super ObjectTreeNavigator> action) {
+		if (index >= end)
+			return false;
+
+		action.accept(new GsonObjectTreeNavigator(jsonArray.get(index++)));
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super ObjectTreeNavigator> action) {
+		for (; index < end; index++)
+			action.accept(new GsonObjectTreeNavigator(jsonArray.get(index)));
+	}
+
+	/** @return the first half of the remaining elements, this one keeps the second half */
+	@Override
+	public Spliterator<ObjectTreeNavigator> trySplit() {
+		int middle = (index + end) >>> 1;
+		if (middle <= index)
+			return null;
+
+		JsonArraySpliterator first = new JsonArraySpliterator(jsonArray, index, middle);
+		index = middle;
+		return first;
+	}
+
+	@Override
+	public long estimateSize() {
+		return end - index;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | SIZED | SUBSIZED | NONNULL;
+	}
+
+	@Override public String toString() {
+		return "JsonArraySpliterator[" + index + ", " + end + ")";
+	}
+}
@@ -1,6 +1,8 @@
 package prototype;
 
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Stream;
 
 /**
  * Implementers allows to navigate an object tree using field paths.
@@ -10,6 +12,13 @@ import java.util.Map;
  * the index could be surrounded by "[" and "]" without the dots.
  * <br/>
  * Empty path segments are ignored. Missing attributes are considered null.
+ * <br/>
+ * Each method has a version that takes a {@link CompiledPath}, for the paths that are followed many times.
+ * <br/>
+ * The navigators only read the tree, so a tree that is not modified can be read by several threads at once, through
+ * the same navigator or through the navigators returned for its elements (for example the elements of a parallel
+ * {@link #getStream(String)}). The only exception are the cursors (see {@link #getCursor(String)}), each one should
+ * be used by a single thread.
  */
 public interface ObjectTreeNavigator {
 	/**
@@ -29,6 +38,12 @@ public interface ObjectTreeNavigator {
 	 */
 	String getString(String fieldPath);
 
+	/** @see #getString(String, String) */
+	String getString(CompiledPath fieldPath, String defaultValue);
+
+	/** @see #getString(String) */
+	String getString(CompiledPath fieldPath);
+
 	/**
 	 * Returns a {@link ObjectTreeNavigator} for the subtree that starts in element found in the given path.
 	 *
@@ -37,6 +52,9 @@ public interface ObjectTreeNavigator {
 	 */
 	ObjectTreeNavigator getNavigator(String fieldPath);
 
+	/** @see #getNavigator(String) */
+	ObjectTreeNavigator getNavigator(CompiledPath fieldPath);
+
 	/**
 	 * Returns the value of a leave in the object tree.
 	 *
@@ -45,6 +63,9 @@ public interface ObjectTreeNavigator {
 	 */
 	boolean getBoolean(String fieldPath);
 
+	/** @see #getBoolean(String) */
+	boolean getBoolean(CompiledPath fieldPath);
+
 	/**
 	 * Returns the value of a leave in the object tree as a int.
 	 *
@@ -53,6 +74,9 @@ public interface ObjectTreeNavigator {
 	 */
 	int getInt(String fieldPath);
 
+	/** @see #getInt(String) */
+	int getInt(CompiledPath fieldPath);
+
 	/**
 	 * Returns the value of a leave in the object tree as a double.
 	 *
@@ -61,6 +85,17 @@ public interface ObjectTreeNavigator {
 	 */
 	double getDouble(String fieldPath);
 
+	/** @see #getDouble(String) */
+	double getDouble(CompiledPath fieldPath);
+
+	/**
+	 * Follows several paths at once, visiting the elements they have in common once.
+	 *
+	 * @param fieldPaths the paths to traverse
+	 * @return the elements at the end of the paths
+	 */
+	PathBatch.Values getValues(PathBatch fieldPaths);
+
 	/**
 	 * Returns an {@link Iterable} for the elements that lies in the given path.
 	 * <br/>
@@ -71,6 +106,51 @@ public interface ObjectTreeNavigator {
 	 */
 	Iterable<ObjectTreeNavigator> getIterable(String fieldPath);
 
+	/** @see #getIterable(String) */
+	Iterable<ObjectTreeNavigator> getIterable(CompiledPath fieldPath);
+
+	/**
+	 * Returns an {@link Iterable} for the elements that lies in the given path, that does not create an object for
+	 * each element.
+	 * <br/>
+	 * The iterator returns the same {@link ObjectTreeNavigator} for all the elements, it is moved to the next element
+	 * each time {@code next()} is called. It should not be kept after that.
+	 *
+	 * @param fieldPath the path to traverse
+	 * @return an Iterable for the elements of the array
+	 */
+	Iterable<ObjectTreeNavigator> getCursor(String fieldPath);
+
+	/** @see #getCursor(String) */
+	Iterable<ObjectTreeNavigator> getCursor(CompiledPath fieldPath);
+
+	/**
+	 * Returns a {@link Spliterator} for the elements that lies in the given path, that splits them by index ranges.
+	 * <br/>
+	 * Each element of the array is returned as a new {@link ObjectTreeNavigator} for that element
+	 *
+	 * @param fieldPath the path to traverse
+	 * @return a Spliterator for the elements of the array, empty if the path is missing
+	 * @throws IllegalArgumentException if the element is not an array
+	 */
+	Spliterator<ObjectTreeNavigator> getSpliterator(String fieldPath);
+
+	/** @see #getSpliterator(String) */
+	Spliterator<ObjectTreeNavigator> getSpliterator(CompiledPath fieldPath);
+
+	/**
+	 * Returns a sequential {@link Stream} for the elements that lies in the given path, call {@code parallel()} on it
+	 * to read the elements with several threads.
+	 *
+	 * @param fieldPath the path to traverse
+	 * @return a Stream of the elements of the array, as {@link #getSpliterator(String)} returns them
+	 * @throws IllegalArgumentException if the element is not an array
+	 */
+	Stream<ObjectTreeNavigator> getStream(String fieldPath);
+
+	/** @see #getStream(String) */
+	Stream<ObjectTreeNavigator> getStream(CompiledPath fieldPath);
+
 	/** @return {@code true} if this element stands for a primitive value */
 	boolean isPrimitive();
 
@@ -82,7 +162,11 @@ public interface ObjectTreeNavigator {
 
 	/**
 	 * @param fieldPath the path to traverse
-	 * @return a {@link Map} with navigator for the fields of this object
+	 * @return a read only {@link Map} with navigator for the fields of this object, each navigator is created when
+	 * its field is read
 	 */
 	Map<String, ObjectTreeNavigator> getFieldsForObject(String fieldPath);
+
+	/** @see #getFieldsForObject(String) */
+	Map<String, ObjectTreeNavigator> getFieldsForObject(CompiledPath fieldPath);
 }
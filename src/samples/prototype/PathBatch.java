@@ -0,0 +1,200 @@
+package prototype;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Several field paths (see {@link ObjectTreeNavigator}) followed together: the paths are merged by their common
+ * steps, so they are all followed in a single traversal that visits each element once, however many paths go through
+ * it (see {@link ObjectTreeNavigator#getValues}).
+ * <br/>
+ * A batch is immutable and can be shared by threads, it should be built once and used for every record read.
+ */
+public final class PathBatch {
+	private final String[] fieldPaths;
+	private final Node root;
+
+	private PathBatch(List<String> fieldPaths) {
+		this.fieldPaths = fieldPaths.toArray(new String[fieldPaths.size()]);
+
+		NodeBuilder builder = new NodeBuilder(null, -1, null);
+		for (int path = 0; path < this.fieldPaths.length; path++)
+			builder.add(CompiledPath.compile(this.fieldPaths[path]), path);
+		root = builder.build();
+	}
+
+	/**
+	 * @param fieldPaths the paths to follow, their values are found by their position
+	 */
+	public static PathBatch of(String... fieldPaths) {
+		return of(Arrays.asList(fieldPaths));
+	}
+
+	/**
+	 * @param fieldPaths the paths to follow, their values are found by their position
+	 */
+	public static PathBatch of(List<String> fieldPaths) {
+		return new PathBatch(fieldPaths);
+	}
+
+	/** @return the number of paths */
+	public int size() {
+		return fieldPaths.length;
+	}
+
+	/** @return the path in the position */
+	public String getPath(int path) {
+		return fieldPaths[path];
+	}
+
+	/**
+	 * Follows all the paths from the given element
+	 * @return the elements at the end of the paths, null for the paths that are missing
+	 * @throws IllegalArgumentException if a primitive value is found in the middle of a path (cannot go deeper)
+	 */
+	Values resolve(JsonElement tree) {
+		JsonElement[] values = new JsonElement[fieldPaths.length];
+		root.resolve(tree, values);
+
+		return new Values(values);
+	}
+
+	@Override public String toString() {
+		return "PathBatch" + Arrays.toString(fieldPaths);
+	}
+
+	/**
+	 * The elements found at the end of the paths of a batch, given by the position of their path. Each one is
+	 * converted as the navigator converts the element at the end of a single path.
+	 */
+	public static final class Values {
+		private final JsonElement[] values;
+
+		private Values(JsonElement[] values) {
+			this.values = values;
+		}
+
+		public int size() {
+			return values.length;
+		}
+
+		/** @see ObjectTreeNavigator#getString(String, String) */
+		public String getString(int path, String defaultValue) {
+			return GsonObjectTreeNavigator.stringOf(values[path], defaultValue);
+		}
+
+		/** @see ObjectTreeNavigator#getString(String) */
+		public String getString(int path) {
+			return getString(path, null);
+		}
+
+		/** @see ObjectTreeNavigator#getNavigator(String) */
+		public ObjectTreeNavigator getNavigator(int path) {
+			return GsonObjectTreeNavigator.navigatorOf(values[path]);
+		}
+
+		/** @see ObjectTreeNavigator#getBoolean(String) */
+		public boolean getBoolean(int path) {
+			return GsonObjectTreeNavigator.booleanOf(values[path]);
+		}
+
+		/** @see ObjectTreeNavigator#getInt(String) */
+		public int getInt(int path) {
+			return GsonObjectTreeNavigator.intOf(values[path]);
+		}
+
+		/** @see ObjectTreeNavigator#getDouble(String) */
+		public double getDouble(int path) {
+			return GsonObjectTreeNavigator.doubleOf(values[path]);
+		}
+	}
+
+	/** A step shared by some paths: the paths that end in it and the next steps of the ones that go deeper */
+	private static final class Node {
+		/** The name of the step and a path that has it, to describe the step if it cannot be followed */
+		final String name;
+		final int step;
+		final CompiledPath fieldPath;
+		final int[] ends;
+		final Node[] next;
+
+		Node(String name, int step, CompiledPath fieldPath, int[] ends, Node[] next) {
+			this.name = name;
+			this.step = step;
+			this.fieldPath = fieldPath;
+			this.ends = ends;
+			this.next = next;
+		}
+
+		void resolve(JsonElement current, JsonElement[] values) {
+			for (int path : ends)
+				values[path] = current;
+
+			// A missing element or a null in the middle of the paths: they are missing, as their values already are
+			if (current == null || current.isJsonNull() || next.length == 0)
+				return;
+
+			if (current.isJsonArray()) {
+				JsonArray jsonArray = (JsonArray) current;
+				for (Node node : next) {
+					int index = node.fieldPath.index(node.step);
+					node.resolve(index < jsonArray.size() ? jsonArray.get(index) : null, values);
+				}
+			} else if (current.isJsonObject()) {
+				JsonObject jsonObject = (JsonObject) current;
+				for (Node node : next)
+					node.resolve(jsonObject.get(node.name), values);
+			} else {
+				Node node = next[0];
+				throw new IllegalArgumentException(String.format("%s is not a primitive value at position %s (%s)", node.fieldPath, node.step, node.name));
+			}
+		}
+	}
+
+	/** Merges the paths, the nodes are built when all of them were added */
+	private static final class NodeBuilder {
+		final String name;
+		final int step;
+		final CompiledPath fieldPath;
+		final List<Integer> ends = Lists.newArrayList();
+		final Map<String, NodeBuilder> next = Maps.newLinkedHashMap();
+
+		NodeBuilder(String name, int step, CompiledPath fieldPath) {
+			this.name = name;
+			this.step = step;
+			this.fieldPath = fieldPath;
+		}
+
+		void add(CompiledPath path, int position) {
+			NodeBuilder node = this;
+			for (int step = 0; step < path.size(); step++) {
+				String stepName = path.name(step);
+				NodeBuilder child = node.next.get(stepName);
+				if (child == null) {
+					child = new NodeBuilder(stepName, step, path);
+					node.next.put(stepName, child);
+				}
+				node = child;
+			}
+
+			node.ends.add(position);
+		}
+
+		Node build() {
+			Node[] nodes = new Node[next.size()];
+			int i = 0;
+			for (NodeBuilder child : next.values())
+				nodes[i++] = child.build();
+
+			return new Node(name, step, fieldPath, Ints.toArray(ends), nodes);
+		}
+	}
+}
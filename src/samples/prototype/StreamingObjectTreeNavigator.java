@@ -0,0 +1,326 @@
+package prototype;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * {@link ObjectTreeNavigator} for a JSON document read from a {@link JsonReader}, for documents too large to build
+ * their whole tree: only the paths declared when it is read can be followed.
+ * <br/>
+ * The document is read once, from the start to the end. The elements that are not in the declared paths are skipped
+ * without building them, so the memory used depends on the size of the elements found at the end of the paths, not on
+ * the size of the document. The elements read make a pruned copy of the document (the skipped elements of an array
+ * that are before a declared index are kept as nulls), where the paths are followed as in a
+ * {@link GsonObjectTreeNavigator}.
+ */
+public class StreamingObjectTreeNavigator implements ObjectTreeNavigator {
+	private static final JsonParser PARSER = new JsonParser();
+
+	/** The declared paths, as they were written and with their steps separated by dots */
+	private final Set<String> fieldPaths;
+	private final GsonObjectTreeNavigator tree;
+
+	private StreamingObjectTreeNavigator(Set<String> fieldPaths, JsonElement tree) {
+		this.fieldPaths = fieldPaths;
+		this.tree = new GsonObjectTreeNavigator(tree);
+	}
+
+	/**
+	 * Reads a document, keeping only the elements in the given paths
+	 * @param reader the JSON document, it is read in lenient mode as {@link JsonParser} does
+	 * @param fieldPaths the paths that can be followed in the navigator
+	 * @return a navigator for the paths
+	 * @throws IOException if the document cannot be read
+	 */
+	public static StreamingObjectTreeNavigator read(Reader reader, Collection<String> fieldPaths) throws IOException {
+		JsonReader in = new JsonReader(reader);
+		in.setLenient(true);
+
+		return read(in, fieldPaths);
+	}
+
+	/**
+	 * Reads the next value of the reader, keeping only the elements in the given paths
+	 * @param in the reader, positioned before a value
+	 * @param fieldPaths the paths that can be followed in the navigator
+	 * @return a navigator for the paths
+	 * @throws IOException if the value cannot be read
+	 */
+	public static StreamingObjectTreeNavigator read(JsonReader in, Collection<String> fieldPaths) throws IOException {
+		Node root = new Node();
+		Set<String> declared = Sets.newHashSet();
+
+		for (String fieldPath : fieldPaths) {
+			CompiledPath path = CompiledPath.compile(fieldPath);
+			root.add(path, 0);
+			declared.add(fieldPath);
+			declared.add(keyOf(path));
+		}
+
+		return new StreamingObjectTreeNavigator(declared, read(in, root));
+	}
+
+	/**
+	 * Reads the next value, building only the elements in the paths of the node
+	 * @return the value, with only the fields and the array elements the node has paths for
+	 */
+	private static JsonElement read(JsonReader in, Node node) throws IOException {
+		if (node.complete)
+			return PARSER.parse(in);
+
+		switch (in.peek()) {
+		case BEGIN_OBJECT:
+			JsonObject object = new JsonObject();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				Node field = node.fields.get(name);
+				if (field == null)
+					in.skipValue();
+				else
+					object.add(name, read(in, field));
+			}
+			in.endObject();
+			return object;
+
+		case BEGIN_ARRAY:
+			JsonArray array = new JsonArray();
+			in.beginArray();
+			// The elements after the last declared index are not kept, the paths to them find the end of the array
+			for (int index = 0; in.hasNext(); index++) {
+				Node element = node.elements.get(index);
+				if (element != null)
+					array.add(read(in, element));
+				else {
+					in.skipValue();
+					if (index < node.lastElement)
+						array.add(JsonNull.INSTANCE);
+				}
+			}
+			in.endArray();
+			return array;
+
+		default:
+			// A primitive or a null: the paths that go deeper find it as in the tree
+			return PARSER.parse(in);
+		}
+	}
+
+	/** @return the steps of the path separated by dots, the same for the equivalent ways to write a path */
+	private static String keyOf(CompiledPath path) {
+		StringBuilder key = new StringBuilder();
+		for (int step = 0; step < path.size(); step++)
+			key.append('.').append(path.name(step));
+
+		return key.toString();
+	}
+
+	private CompiledPath declared(String fieldPath) {
+		return declared(CompiledPath.compile(fieldPath));
+	}
+
+	private CompiledPath declared(CompiledPath fieldPath) {
+		Preconditions.checkArgument(fieldPaths.contains(fieldPath.toString()) || fieldPaths.contains(keyOf(fieldPath)),
+			"%s was not declared when the document was read", fieldPath);
+		return fieldPath;
+	}
+
+	@Override
+	public String getString(String fieldPath, String defaultValue) {
+		return tree.getString(declared(fieldPath), defaultValue);
+	}
+
+	@Override
+	public String getString(String fieldPath) {
+		return tree.getString(declared(fieldPath));
+	}
+
+	@Override
+	public String getString(CompiledPath fieldPath, String defaultValue) {
+		return tree.getString(declared(fieldPath), defaultValue);
+	}
+
+	@Override
+	public String getString(CompiledPath fieldPath) {
+		return tree.getString(declared(fieldPath));
+	}
+
+	/**
+	 * @return a navigator for the element, where any path can be followed
+	 */
+	@Override
+	public ObjectTreeNavigator getNavigator(String fieldPath) {
+		return tree.getNavigator(declared(fieldPath));
+	}
+
+	@Override
+	public ObjectTreeNavigator getNavigator(CompiledPath fieldPath) {
+		return tree.getNavigator(declared(fieldPath));
+	}
+
+	@Override
+	public boolean getBoolean(String fieldPath) {
+		return tree.getBoolean(declared(fieldPath));
+	}
+
+	@Override
+	public boolean getBoolean(CompiledPath fieldPath) {
+		return tree.getBoolean(declared(fieldPath));
+	}
+
+	@Override
+	public int getInt(String fieldPath) {
+		return tree.getInt(declared(fieldPath));
+	}
+
+	@Override
+	public int getInt(CompiledPath fieldPath) {
+		return tree.getInt(declared(fieldPath));
+	}
+
+	@Override
+	public double getDouble(String fieldPath) {
+		return tree.getDouble(declared(fieldPath));
+	}
+
+	@Override
+	public double getDouble(CompiledPath fieldPath) {
+		return tree.getDouble(declared(fieldPath));
+	}
+
+	@Override
+	public PathBatch.Values getValues(PathBatch fieldPaths) {
+		for (int path = 0; path < fieldPaths.size(); path++)
+			declared(fieldPaths.getPath(path));
+
+		return tree.getValues(fieldPaths);
+	}
+
+	@Override
+	public Iterable<ObjectTreeNavigator> getIterable(String fieldPath) {
+		return tree.getIterable(declared(fieldPath));
+	}
+
+	@Override
+	public Iterable<ObjectTreeNavigator> getIterable(CompiledPath fieldPath) {
+		return tree.getIterable(declared(fieldPath));
+	}
+
+	@Override
+	public Iterable<ObjectTreeNavigator> getCursor(String fieldPath) {
+		return tree.getCursor(declared(fieldPath));
+	}
+
+	@Override
+	public Iterable<ObjectTreeNavigator> getCursor(CompiledPath fieldPath) {
+		return tree.getCursor(declared(fieldPath));
+	}
+
+	@Override
+	public Spliterator<ObjectTreeNavigator> getSpliterator(String fieldPath) {
+		return tree.getSpliterator(declared(fieldPath));
+	}
+
+	@Override
+	public Spliterator<ObjectTreeNavigator> getSpliterator(CompiledPath fieldPath) {
+		return tree.getSpliterator(declared(fieldPath));
+	}
+
+	@Override
+	public Stream<ObjectTreeNavigator> getStream(String fieldPath) {
+		return tree.getStream(declared(fieldPath));
+	}
+
+	@Override
+	public Stream<ObjectTreeNavigator> getStream(CompiledPath fieldPath) {
+		return tree.getStream(declared(fieldPath));
+	}
+
+	@Override
+	public boolean isPrimitive() {
+		return tree.isPrimitive();
+	}
+
+	@Override
+	public boolean isObject() {
+		return tree.isObject();
+	}
+
+	@Override
+	public boolean isArray() {
+		return tree.isArray();
+	}
+
+	@Override
+	public Map<String, ObjectTreeNavigator> getFieldsForObject(String fieldPath) {
+		return tree.getFieldsForObject(declared(fieldPath));
+	}
+
+	@Override
+	public Map<String, ObjectTreeNavigator> getFieldsForObject(CompiledPath fieldPath) {
+		return tree.getFieldsForObject(declared(fieldPath));
+	}
+
+	@Override public String toString() {
+		return "StreamingObjectTreeNavigator{" + fieldPaths + '}';
+	}
+
+	/**
+	 * The declared paths that go through an element, by their next step. A step is followed as the name of a field in
+	 * an object and, if it is a number, as an index in an array, so both lead to the same node.
+	 */
+	private static class Node {
+		final Map<String, Node> fields = Maps.newHashMap();
+		final Map<Integer, Node> elements = Maps.newHashMap();
+		/** The elements before this index are kept, to be found by their index */
+		int lastElement;
+		/** A path ends in this element, so all of it is kept */
+		boolean complete;
+
+		void add(CompiledPath path, int step) {
+			if (step == path.size()) {
+				complete = true;
+				return;
+			}
+
+			String name = path.name(step);
+			Node next = fields.get(name);
+			if (next == null) {
+				Integer index = indexOf(path, step);
+				next = index == null ? null : elements.get(index);
+				if (next == null)
+					next = new Node();
+				fields.put(name, next);
+				if (index != null) {
+					elements.put(index, next);
+					lastElement = Math.max(lastElement, index);
+				}
+			}
+
+			next.add(path, step + 1);
+		}
+
+		private static Integer indexOf(CompiledPath path, int step) {
+			try {
+				return path.index(step);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,484 @@
+package com.medallia.codefixer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.internal.TextListener;
+import org.junit.runner.Description;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
+
+/**
+ * Runs the tests against the meta-program, one option vector at a time.
+ * <br/>
+ * A runner owns the class loader the meta-program was loaded with, and so its own set of selectors. Runners built
+ * with {@link #isolated} do not share any selector state and can be used from different threads at the same time.
+ * <br/>
+ * The tests run in a thread owned by the runner while the calling thread acts as watchdog: when the candidate exceeds
+ * its time the selectors are asked to stop (the candidate fails the next time it reaches one) and the test thread is
+ * interrupted. If the candidate does not stop anyway (e.g. it loops without reaching a selector) the test thread is
+ * killed and the runner is {@link #isBroken() broken}, it should be replaced with {@link #replacement()}.
+ * <br/>
+ * When a {@link CoverageIndex} is given, the runner records which selectors each test reaches and skips the tests
+ * whose outcome is already known for the chosen options.
+ * <br/>
+ * In fail fast mode a candidate stops at its first failing test (or is not run at all if a test is known to fail), so
+ * a failing candidate has a single failure, whether it was run or resolved from the coverage. When a
+ * {@link FailureHistory} is given the tests that failed more often for previous candidates run first.
+ */
+public class CandidateRunner implements CandidateExecutor {
+
+	private static final long DEFAULT_TIMEOUT = 30_000;
+	private static final long STOP_GRACE_TIME = 1_000;
+
+	private final Supplier<ClassLoader> isolatedLoaders;
+	private final String programClassName;
+	private final String testClassName;
+	private final boolean debug;
+
+	private final List<String> programClassNames;
+	private final Class<?> testClass;
+	private final List<Description> tests;
+	private final int testCount;
+	private final List<SelectorControl> selectors;
+	private final List<RunListener> listeners = Lists.newArrayList();
+
+	private final ExecutorService testExecutor;
+	private volatile Thread testThread;
+	private boolean broken;
+	private long timeout = DEFAULT_TIMEOUT;
+	private volatile boolean stopping;
+
+	private CoverageIndex coverageIndex;
+	private final List<CoverageRecorder> coverageRecorders = Lists.newArrayList();
+	private CoverageListener coverageListener;
+	private int[] currentOptions;
+
+	private boolean failFast;
+	private FailureHistory failureHistory;
+	private ResultCache resultCache;
+
+	private CandidateRunner(ClassLoader loader, Supplier<ClassLoader> isolatedLoaders, String programClassName, String testClassName, boolean debug) {
+		this.isolatedLoaders = isolatedLoaders;
+		this.programClassName = programClassName;
+		this.testClassName = testClassName;
+		this.debug = debug;
+
+		try {
+			// Loading the program classes registers their selectors
+			programClassNames = loadProgram(programClassName, loader);
+			testClass = Class.forName(testClassName, true, loader);
+			selectors = loadSelectors(loader);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot load the meta-program " + programClassName, e);
+		}
+
+		tests = leaves(Request.aClass(testClass).getRunner().getDescription(), Lists.newArrayList());
+		testCount = tests.size();
+
+		if (debug)
+			listeners.add(new TextListener(System.out));
+
+		testExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "candidate-" + testClass.getSimpleName());
+			thread.setDaemon(true);
+			testThread = thread;
+			return thread;
+		});
+	}
+
+	/**
+	 * @return a runner that uses the meta-program as loaded by the fixer class loader
+	 */
+	public static CandidateRunner shared(String programClassName, String testClassName, boolean debug) {
+		return new CandidateRunner(CandidateRunner.class.getClassLoader(), isolatingLoaders(testClassName), programClassName, testClassName, debug);
+	}
+
+	/**
+	 * @return a runner with its own copy of the meta-program (the classes in the package of the test) and of the selectors
+	 */
+	public static CandidateRunner isolated(String programClassName, String testClassName, boolean debug) {
+		return isolated(isolatingLoaders(testClassName), programClassName, testClassName, debug);
+	}
+
+	/**
+	 * @param loaders creates a class loader with its own copy of the meta-program and of the selectors each time it is
+	 * called, for this runner and its replacements
+	 * @return a runner with the meta-program loaded by one of the loaders
+	 */
+	public static CandidateRunner isolated(Supplier<ClassLoader> loaders, String programClassName, String testClassName, boolean debug) {
+		return new CandidateRunner(loaders.get(), loaders, programClassName, testClassName, debug);
+	}
+
+	/**
+	 * Loads the program class and the other types of the meta-program, the ones with a range of hot spot ids (see
+	 * {@link HotSpotRanges}). A type whose selectors were only registered when a test uses it would not be searched.
+	 * @return the names of the classes loaded, the program class first
+	 */
+	private static List<String> loadProgram(String programClassName, ClassLoader loader) throws ClassNotFoundException {
+		Class.forName(programClassName, true, loader);
+		List<String> classNames = Lists.newArrayList(programClassName);
+
+		HotSpotRanges ranges;
+		try {
+			ranges = HotSpotRanges.read(MetaProgramGenerator.rangesFile());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the hot spot ranges", e);
+		}
+
+		for (String typeName : ranges.getTypeNames()) {
+			if (typeName.equals(programClassName))
+				continue;
+
+			try {
+				Class.forName(typeName, true, loader);
+				classNames.add(typeName);
+			} catch (ClassNotFoundException e) {
+				// The type was removed from the program after its range was assigned
+			}
+		}
+
+		return classNames;
+	}
+
+	private static Supplier<ClassLoader> isolatingLoaders(String testClassName) {
+		String testPackage = testClassName.substring(0, testClassName.lastIndexOf('.') + 1);
+
+		return () -> new IsolatingClassLoader(CandidateRunner.class.getClassLoader(), ImmutableList.of(testPackage, Selector.class.getName()));
+	}
+
+	/**
+	 * @return a new isolated runner for the same meta-program, to be used instead of a broken one
+	 */
+	@Override public CandidateRunner replacement() {
+		CandidateRunner runner = isolated(isolatedLoaders, programClassName, testClassName, debug);
+		runner.setTimeout(timeout);
+		if (coverageIndex != null)
+			runner.setCoverageIndex(coverageIndex);
+		if (failureHistory != null)
+			runner.setFailureHistory(failureHistory);
+		runner.setFailFast(failFast);
+		runner.setResultCache(resultCache);
+		return runner;
+	}
+
+	private static List<Description> leaves(Description description, List<Description> tests) {
+		if (description.isTest())
+			tests.add(description);
+		else
+			description.getChildren().forEach(child -> leaves(child, tests));
+
+		return tests;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<SelectorControl> loadSelectors(ClassLoader loader) throws ReflectiveOperationException {
+		Class<?> selectorClass = Class.forName(Selector.class.getName(), true, loader);
+		List<SelectorControl> selectors = (List<SelectorControl>) selectorClass.getMethod("allSelectors").invoke(null);
+
+		if (selectors.isEmpty())
+			// There's no hot spot in program. Add one to run it at least once
+			selectors = ImmutableList.of((SelectorControl) selectorClass.getMethod("of", int.class, String[].class).invoke(null, 0, new String[] {"n/a"}));
+
+		return selectors;
+	}
+
+	/** @return the classes of the meta-program, the program class first */
+	public List<String> getProgramClassNames() {
+		return programClassNames;
+	}
+
+	public List<SelectorControl> getSelectors() {
+		return selectors;
+	}
+
+	/** @return the class loader of the meta-program and the tests */
+	public ClassLoader getClassLoader() {
+		return testClass.getClassLoader();
+	}
+
+	public int getTestCount() {
+		return testCount;
+	}
+
+	/** @param timeout the time in ms a candidate can run before being aborted */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * @param coverageIndex where to record the selectors reached by each test and to look for known outcomes. It can be
+	 * shared with other runners.
+	 */
+	public void setCoverageIndex(CoverageIndex coverageIndex) {
+		coverageRecorders.remove(this.coverageIndex);
+		this.coverageIndex = coverageIndex;
+		addCoverageRecorder(coverageIndex);
+	}
+
+	/** @param recorder will receive the selectors reached by each test run and its outcome */
+	public void addCoverageRecorder(CoverageRecorder recorder) {
+		if (coverageListener == null) {
+			coverageListener = new CoverageListener();
+			listeners.add(coverageListener);
+		}
+
+		coverageRecorders.add(recorder);
+	}
+
+	/** @param failFast true to stop each candidate at its first failing test */
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+	/**
+	 * @param failureHistory where to count the failures of each test, the tests that fail more often are run first.
+	 * It can be shared with other runners.
+	 */
+	public void setFailureHistory(FailureHistory failureHistory) {
+		if (this.failureHistory == null)
+			listeners.add(new RunListener() {
+				@Override public void testFailure(Failure failure) {
+					CandidateRunner.this.failureHistory.recordFailure(failure.getDescription().getDisplayName());
+				}
+			});
+
+		this.failureHistory = failureHistory;
+	}
+
+	/**
+	 * @param resultCache where to look for the results of candidates checked before and to keep the new ones. It can
+	 * be shared with other runners.
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	@Override public boolean isBroken() {
+		return broken;
+	}
+
+	/**
+	 * Chooses the given options in the selectors and runs the tests
+	 * @param options the option to choose for each selector
+	 * @return the result of the test run, or the one in the result cache if the candidate was checked before
+	 */
+	@Override public CandidateResult run(int[] options) {
+		if (resultCache == null)
+			return runTests(options);
+
+		CandidateResult result = resultCache.get(options);
+		if (result == null) {
+			result = runTests(options);
+			resultCache.put(result);
+		}
+
+		return result;
+	}
+
+	private CandidateResult runTests(int[] options) {
+		if (broken)
+			throw new IllegalStateException("The runner was broken by a previous candidate");
+
+		String[] namedOptions = new String[options.length];
+
+		for (int i = options.length - 1; i >= 0; i--) {
+			selectors.get(i).choose(options[i]);
+			selectors.get(i).setStopRequested(false);
+			selectors.get(i).resetHitCount();
+			namedOptions[i] = selectors.get(i).getChosenOptionDescription();
+		}
+
+		List<Description> toRun = tests;
+		int knownFailures = 0;
+
+		if (coverageIndex != null) {
+			toRun = Lists.newArrayList();
+
+			for (Description test : tests) {
+				Boolean passed = coverageIndex.knownOutcome(test.getDisplayName(), options);
+				if (passed == null)
+					toRun.add(test);
+				else if (!passed) {
+					// A fail fast run stops at its first failure, the result is the same whatever test fails
+					if (failFast)
+						return new CandidateResult(options, namedOptions, testCount, 1, 0, false, 0);
+					knownFailures++;
+				}
+			}
+
+			if (toRun.isEmpty())
+				return new CandidateResult(options, namedOptions, testCount, knownFailures, 0, false, 0);
+		}
+
+		Request request = Request.aClass(testClass);
+		if (toRun.size() < testCount)
+			request = request.filterWith(new TestsFilter(toRun));
+		if (failureHistory != null) {
+			Comparator<String> mostFailedFirst = failureHistory.mostFailedFirst();
+			request = request.sortWith((a, b) -> mostFailedFirst.compare(a.getDisplayName(), b.getDisplayName()));
+		}
+		Runner testRunner = request.getRunner();
+		int knownCount = testCount - toRun.size();
+
+		currentOptions = options;
+		stopping = false;
+
+		long startTime = System.currentTimeMillis();
+		Future<Result> future = testExecutor.submit(() -> execute(testRunner));
+
+		try {
+			try {
+				Result result = future.get(timeout, TimeUnit.MILLISECONDS);
+				return new CandidateResult(options, namedOptions, knownCount + result.getRunCount(), knownFailures + result.getFailureCount(), result.getRunTime(), false, toRun.size())
+					.withSelectorHits(hitCounts());
+			} catch (TimeoutException e) {
+				requestStop();
+			}
+
+			try {
+				Result result = future.get(STOP_GRACE_TIME, TimeUnit.MILLISECONDS);
+				return new CandidateResult(options, namedOptions, knownCount + result.getRunCount(), knownFailures + result.getFailureCount(), result.getRunTime(), true, toRun.size())
+					.withSelectorHits(hitCounts());
+			} catch (TimeoutException e) {
+				kill();
+				return new CandidateResult(options, namedOptions, testCount, testCount, System.currentTimeMillis() - startTime, true, toRun.size());
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Cannot run the tests for " + Arrays.toString(namedOptions), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running the tests", e);
+		}
+	}
+
+	/** @return the number of times the tests checked each selector */
+	private long[] hitCounts() {
+		return selectors.stream().mapToLong(SelectorControl::getHitCount).toArray();
+	}
+
+	/**
+	 * Runs the tests notifying the listeners, like {@link org.junit.runner.JUnitCore} does, but stopping at the first
+	 * failure in fail fast mode.
+	 */
+	private Result execute(Runner testRunner) {
+		RunNotifier notifier = new RunNotifier();
+		Result result = new Result();
+
+		notifier.addFirstListener(result.createListener());
+		listeners.forEach(notifier::addListener);
+
+		if (failFast)
+			notifier.addListener(new RunListener() {
+				@Override public void testFailure(Failure failure) {
+					notifier.pleaseStop();
+				}
+			});
+
+		try {
+			notifier.fireTestRunStarted(testRunner.getDescription());
+			testRunner.run(notifier);
+		} catch (StoppedByUserException e) {
+			// Fail fast, the remaining tests are not run
+		}
+		notifier.fireTestRunFinished(result);
+
+		return result;
+	}
+
+	private void requestStop() {
+		stopping = true;
+		selectors.forEach(selector -> selector.setStopRequested(true));
+		testThread.interrupt();
+	}
+
+	/**
+	 * Stops the test thread by force. The meta-program state could be inconsistent after this so the runner is not
+	 * used anymore.
+	 */
+	@SuppressWarnings("deprecation")
+	private void kill() {
+		broken = true;
+		testExecutor.shutdownNow();
+
+		try {
+			testThread.stop();
+		} catch (UnsupportedOperationException e) {
+			// Not supported by this JVM, the daemon thread is abandoned
+		}
+	}
+
+	/** Records the selectors reached by each test and its outcome in the coverage recorders */
+	private class CoverageListener extends RunListener {
+		private boolean failed;
+
+		@Override public void testStarted(Description description) {
+			selectors.forEach(SelectorControl::resetReached);
+			failed = false;
+		}
+
+		@Override public void testFailure(Failure failure) {
+			failed = true;
+		}
+
+		@Override public void testFinished(Description description) {
+			// The outcome of an aborted test says nothing about the candidate
+			if (stopping)
+				return;
+
+			int[] reached = new int[selectors.size()];
+			int count = 0;
+			for (int i = 0; i < reached.length; i++) {
+				if (selectors.get(i).wasReached())
+					reached[count++] = i;
+			}
+
+			int[] reachedSelectors = Arrays.copyOf(reached, count);
+			coverageRecorders.forEach(recorder -> recorder.record(description.getDisplayName(), reachedSelectors, currentOptions, !failed));
+		}
+	}
+
+	/** Runs only the given tests */
+	private static class TestsFilter extends Filter {
+		private final Set<Description> tests;
+
+		TestsFilter(List<Description> tests) {
+			this.tests = ImmutableSet.copyOf(tests);
+		}
+
+		@Override public boolean shouldRun(Description description) {
+			if (description.isTest())
+				return tests.contains(description);
+
+			for (Description child : description.getChildren()) {
+				if (shouldRun(child))
+					return true;
+			}
+			return false;
+		}
+
+		@Override public String describe() {
+			return tests.size() + " tests";
+		}
+	}
+}
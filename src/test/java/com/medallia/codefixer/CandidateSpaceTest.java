@@ -0,0 +1,60 @@
+package com.medallia.codefixer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link CandidateSpace} class
+ */
+public class CandidateSpaceTest {
+
+	/** Verifies each index is decoded into its option vector and encoded back, the last selector changing first */
+	@Test
+	public void testRoundTrip() {
+		CandidateSpace space = new CandidateSpace(Arrays.asList(2, 3, 4));
+
+		assertEquals(24, space.size());
+		assertArrayEquals(new int[] {0, 0, 1}, space.decode(1));
+		assertArrayEquals(new int[] {0, 1, 0}, space.decode(4));
+		assertArrayEquals(new int[] {1, 2, 3}, space.decode(23));
+		for (long index = 0; index < space.size(); index++)
+			assertEquals(index, space.encode(space.decode(index)));
+	}
+
+	/** Verifies the indexes near the largest one are decoded without overflowing */
+	@Test
+	public void testLargestSpace() {
+		// 3^39 option vectors, the largest power of 3 below Long.MAX_VALUE
+		CandidateSpace space = new CandidateSpace(Collections.nCopies(39, 3));
+		int[] last = space.decode(space.size() - 1);
+
+		assertArrayEquals(Collections.nCopies(39, 2).stream().mapToInt(Integer::intValue).toArray(), last);
+		assertEquals(space.size() - 1, space.encode(last));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyCandidates() {
+		new CandidateSpace(Collections.nCopies(40, 3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIndexOutOfRange() {
+		new CandidateSpace(Arrays.asList(2, 3)).decode(6);
+	}
+
+	/** Verifies the number of candidates is saturated instead of overflowing, for the strategies that do not index them */
+	@Test
+	public void testCount() {
+		List<Integer> sizes = Arrays.asList(2, 3, 4);
+
+		assertEquals(24, CandidateSpace.count(sizes));
+		assertEquals(Long.MAX_VALUE, CandidateSpace.count(Collections.nCopies(40, 3)));
+		assertEquals(1, CandidateSpace.count(Collections.<Integer>emptyList()));
+	}
+}
@@ -1,21 +1,25 @@
 package com.medallia.codefixer;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.Sets;
-import org.junit.internal.TextListener;
-import org.junit.runner.JUnitCore;
-import org.junit.runner.Result;
-import prototype.GsonObjectTreeNavigator;
 import prototype.GsonObjectTreeNavigatorTest;
 
 /**
@@ -26,109 +30,375 @@ import prototype.GsonObjectTreeNavigatorTest;
 public class CodeFixer {
 
 	public static final Class<GsonObjectTreeNavigatorTest> TEST_CLASS = GsonObjectTreeNavigatorTest.class;
+	public static final String PROGRAM_CLASS = "prototype.GsonObjectTreeNavigator";
 
-	public static void main(String[] args) {
+	private static final int BASELINE_RUNS = 3;
+	/** How often the workers are checked while the queue is full, in ms */
+	private static final long WORKER_CHECK_INTERVAL = 100;
+	/** The number of failing candidates with the fewest failures shown when no candidate works */
+	private static final int BEST_CANDIDATES = 10;
 
-		boolean debug = ImmutableList.copyOf(args).contains("debug");
+	public static void main(String[] args) throws InterruptedException, IOException {
+		fix(ImmutableList.copyOf(args), null);
+	}
 
-		new GsonObjectTreeNavigator(null);
+	/**
+	 * Checks the candidates
+	 * @param arguments the command line arguments
+	 * @param programLoaders creates class loaders with their own copy of the meta-program and the tests, or null to
+	 * load them from the class path
+	 */
+	public static void fix(List<String> arguments, Supplier<ClassLoader> programLoaders) throws InterruptedException, IOException {
+		fix(arguments, programLoaders, new RunMetrics());
+	}
 
-		JUnitCore core = new JUnitCore();
+	/**
+	 * Checks the candidates
+	 * @param arguments the command line arguments
+	 * @param programLoaders creates class loaders with their own copy of the meta-program and the tests, or null to
+	 * load them from the class path
+	 * @param metrics where to measure the run, it can have the phases that ran before (generation and compilation)
+	 */
+	public static void fix(List<String> arguments, Supplier<ClassLoader> programLoaders, RunMetrics metrics) throws InterruptedException, IOException {
+		boolean debug = arguments.contains("debug");
+		int workers = intArgument(arguments, "--workers", 1);
+		int timeoutFactor = intArgument(arguments, "--timeout-factor", 10);
+		int timeoutFloor = intArgument(arguments, "--timeout-floor", 1_000);
+		CoverageIndex coverageIndex = arguments.contains("--no-coverage") ? null : new CoverageIndex();
+		String strategyName = stringArgument(arguments, "--strategy", "exhaustive");
+		// The guided search follows the candidate with the fewest failures, so it needs all of them
+		boolean failFast = !arguments.contains("--all-failures") && !strategyName.equals("guided");
+		FailureHistory failureHistory = new FailureHistory();
+		long seed = longArgument(arguments, "--seed", 0);
+		long maxCandidates = longArgument(arguments, "--max-candidates", Long.MAX_VALUE);
+		long maxSeconds = longArgument(arguments, "--max-seconds", 0);
+		int maxSuccesses = intArgument(arguments, "--max-successes", Integer.MAX_VALUE);
+		long from = longArgument(arguments, "--from", 0);
+		long to = longArgument(arguments, "--to", Long.MAX_VALUE);
+		String resultsFile = stringArgument(arguments, "--results", null);
+		String mergeFiles = stringArgument(arguments, "--merge", null);
+		boolean fork = arguments.contains("--fork");
+		String cacheFile = arguments.contains("--no-cache") ? null : stringArgument(arguments, "--cache", "build/candidates.cache");
+		String metricsJsonFile = stringArgument(arguments, "--metrics-json", null);
+		String metricsCsvFile = stringArgument(arguments, "--metrics-csv", null);
+		String logFile = stringArgument(arguments, "--log", null);
+		int listLimit = intArgument(arguments, "--list-limit", 100);
+		String patchesDirectory = stringArgument(arguments, "--patches", null);
 
-		if (debug)
-			core.addListener(new TextListener(System.out));
+		if (mergeFiles != null) {
+			merge(Splitter.on(',').omitEmptyStrings().splitToList(mergeFiles), failFast, listLimit);
+			return;
+		}
 
-		List<Selector> selectors = Selector.allSelectors();
+		if (fork && programLoaders != null)
+			throw new IllegalArgumentException("A meta-program that is not in the class path cannot run in worker JVMs");
 
-		if (selectors.isEmpty())
-			// There's no hot spot in program. Add one to run it at least once
-			selectors = ImmutableList.of(Selector.of(0, "n/a"));
+		CandidateRunner runner;
+		if (programLoaders != null)
+			runner = CandidateRunner.isolated(programLoaders, PROGRAM_CLASS, TEST_CLASS.getName(), debug);
+		else if (workers > 1)
+			runner = CandidateRunner.isolated(PROGRAM_CLASS, TEST_CLASS.getName(), debug);
+		else
+			runner = CandidateRunner.shared(PROGRAM_CLASS, TEST_CLASS.getName(), debug);
 
-		List<String> successes = Lists.newArrayList();
-		List<String> failures = Lists.newArrayList();
-		Multimap<Integer, String> failures2 = Multimaps.newListMultimap(Maps.newHashMap(), Lists::newArrayList);
+		List<Integer> sizes = runner.getSelectors().stream().map(SelectorControl::getOptionCount).collect(Collectors.toList());
 
-		String[] namedOptions = new String[selectors.size()];
-		// Execute the test for each hot spot permutation
-		for (int options[] : permutations(selectors.stream().map(Selector::getOptionCount).collect(Collectors.toList()))) {
+		long baselineStartTime = System.currentTimeMillis();
+		long timeout = adaptiveTimeout(runner, sizes.size(), timeoutFactor, timeoutFloor);
+		metrics.recordPhase("baseline", System.currentTimeMillis() - baselineStartTime);
+		runner.setTimeout(timeout);
+		if (coverageIndex != null)
+			runner.setCoverageIndex(coverageIndex);
+		runner.setFailFast(failFast);
+		runner.setFailureHistory(failureHistory);
 
-			for (int i = options.length - 1; i >= 0; i--) {
-				selectors.get(i).choose(options[i]);
-				selectors.get(i).setStopTime(System.currentTimeMillis() + 30_000);
-				namedOptions[i] = selectors.get(i).getChosenOptionDescription();
-			}
+		ResultCache resultCache = null;
+		if (cacheFile != null) {
+			// The results also depend on fail fast (the failures are not counted after the first one) and on the
+			// coverage (the candidates resolved from it do not run all the tests), the cache checks the timeout
+			String fingerprint = ResultCache.fingerprint(runner.getClassLoader(),
+				ImmutableList.<String>builder().addAll(runner.getProgramClassNames()).add(TEST_CLASS.getName()).build(),
+				failFast, coverageIndex != null);
+			resultCache = new ResultCache(new File(cacheFile), fingerprint, timeout, variantsOf(runner.getSelectors()));
+			runner.setResultCache(resultCache);
+		}
 
-			if (debug)
-				System.out.println("Checking options: " + Arrays.toString(options));
+		CandidateExecutor executor = runner;
+		if (fork) {
+			ForkedRunner forkedRunner = ForkedRunner.start(PROGRAM_CLASS, TEST_CLASS.getName(), timeout, failFast, coverageIndex != null, debug);
+			forkedRunner.setResultCache(resultCache);
+			executor = forkedRunner;
+		}
 
-			Result result = core.run(TEST_CLASS);
+		SearchStrategy strategy;
+		// Only the exhaustive search indexes the candidates, the other strategies can search larger spaces
+		long expectedCandidates = CandidateSpace.count(sizes);
+		if (arguments.contains("--from") || arguments.contains("--to")) {
+			if (!strategyName.equals("exhaustive"))
+				throw new IllegalArgumentException("Only the exhaustive strategy can be limited to a range of candidates");
 
-			if (result.wasSuccessful())
-				successes.add("   Worked !!!  -> " + Arrays.toString(options) + " / " + Arrays.toString(namedOptions));
-			else {
-				String txt = String.format("%s / %s -> It has %s failures out of %s runs in %s ms", 
-						Arrays.toString(options), Arrays.toString(namedOptions), result.getFailureCount(), result.getRunCount(), result.getRunTime());
-				failures.add(txt);
-				failures2.put(result.getFailureCount(), txt);
-			}
+			CandidateSpace space = new CandidateSpace(sizes);
+			strategy = new ExhaustiveSearch(space, from, to);
+			expectedCandidates = Math.max(0, Math.min(to, space.size()) - from);
+			System.out.println(String.format("Checking the candidates from %s to %s of %s", from, Math.min(to, space.size()), space.size()));
+		} else
+			strategy = SearchStrategy.named(strategyName, sizes, seed);
+		SearchBudget budget = new SearchBudget(maxCandidates, maxSeconds > 0 ? maxSeconds * 1000 : Long.MAX_VALUE, maxSuccesses);
+
+		metrics.setting("strategy", strategyName);
+		metrics.setting("workers", workers);
+		metrics.setting("fork", fork);
+		metrics.setting("failFast", failFast);
+		metrics.setting("coverage", coverageIndex != null);
+		metrics.setting("timeoutMs", timeout);
+		metrics.setHotSpots(runner.getSelectors().stream().map(SelectorControl::getHotSpot).collect(Collectors.toList()));
+		if (arguments.contains("--jmx"))
+			metrics.registerMBean();
+
+		// The results are not kept: they go to the sinks as they are checked, the summary keeps only aggregates
+		ResultSummary summary = new ResultSummary(listLimit, BEST_CANDIDATES);
+		List<ResultSink> sinks = Lists.newArrayList(summary, metrics);
+		if (resultsFile != null)
+			sinks.add(ResultSink.tsv(new File(resultsFile)));
+		if (logFile != null)
+			sinks.add(new BinaryResultLog(new File(logFile), variantsOf(runner.getSelectors())));
+		if (metricsJsonFile != null)
+			sinks.add(metrics.jsonSink(new File(metricsJsonFile)));
+		if (metricsCsvFile != null)
+			sinks.add(metrics.csvSink(new File(metricsCsvFile)));
+		PatchWriter patchWriter = null;
+		if (patchesDirectory != null) {
+			patchWriter = new PatchWriter(new File(patchesDirectory), hotSpotsOf(runner.getSelectors()));
+			sinks.add(patchWriter);
 		}
+		ResultSink sink = ResultSink.all(sinks);
+
+		long startTime = System.currentTimeMillis();
+		// An upper bound, the nested hot spots and the budget can skip candidates
+		metrics.startSearch(Math.min(expectedCandidates, maxCandidates));
 
-		// Show result summary
-		Sets.newHashSet(failures2.keys()).forEach(k -> {
-			System.out.println(String.format("\n-- Cases with %s", k));
-			Collection<String> texts = failures2.get(k);
-			if (k <= 2 || texts.size() < 10)
-				texts.forEach(System.out::println);
+		try {
+			if (workers > 1)
+				runParallel(executor, strategy, budget, sink, workers, debug);
 			else
-				System.out.println("There are " + texts.size());
-		});
+				runSequential(executor, strategy, budget, sink, debug);
+		} finally {
+			metrics.endSearch();
+			sink.close();
+			if (resultCache != null)
+				resultCache.close();
+		}
+
+		long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
 
-		// failures.forEach(System.out::println);
+		summary.printFailures(System.out, failFast, timeout);
 
 		System.out.println();
+		System.out.println(String.format("%s candidates checked in %s ms with %s workers using the %s strategy (%.1f candidates/s)",
+				summary.getCount(), elapsed, workers, strategyName, summary.getCount() * 1000.0 / elapsed));
+		if (coverageIndex != null)
+			System.out.println(String.format("%s candidates were resolved from the coverage of previous ones (they only differ in hot spots the tests do not reach)",
+					summary.getResolvedFromCoverage()));
+		if (resultCache != null)
+			System.out.println(String.format("%s candidates were taken from the results of previous runs in %s (use --no-cache to check them again)",
+					resultCache.getHitCount(), cacheFile));
+		System.out.println();
 
-		if (successes.isEmpty())
-			System.out.println("Oops, sorry, we could find a successful option");
-		else
-			successes.forEach(System.out::println);
+		summary.printSuccesses(System.out, failFast);
+		if (patchWriter != null && patchWriter.getCount() > 0)
+			System.out.println(String.format("\n%s patches of the successful candidates were written to %s", patchWriter.getCount(), patchesDirectory));
+	}
+
+	/**
+	 * @return the hot spot of each selector, as written by the generator, or null for the ones that are not in the
+	 * hot spots file
+	 */
+	private static List<HotSpot> hotSpotsOf(List<SelectorControl> selectors) throws IOException {
+		Map<Integer, HotSpot> hotSpots = Maps.uniqueIndex(HotSpot.read(new File(System.getProperty(MetaProgramGenerator.HOT_SPOTS_PROPERTY, MetaProgramGenerator.DEFAULT_HOT_SPOTS_FILE))), HotSpot::getId);
+
+		return selectors.stream().map(selector -> hotSpots.get(selector.getHotSpot())).collect(Collectors.toList());
+	}
+
+	private static List<List<String>> variantsOf(List<SelectorControl> selectors) {
+		return selectors.stream()
+			.map(selector -> IntStream.range(0, selector.getOptionCount()).mapToObj(selector::getOptionDescription).collect(Collectors.toList()))
+			.collect(Collectors.toList());
 	}
 
 	/**
-	 * Computes an iterable though all the permutations or the values in the ranges provided
-	 * @param sizes the number of elements in each range (from 0 to size - 1)
-	 * @return an Iterable
+	 * Shows the summary of the results written by several runs (usually each one checking a range of the candidates)
+	 * as if they were found by a single one. The files can be results files (--results) or binary logs (--log).
 	 */
-	private static Iterable<int[]> permutations(List<Integer> sizes) {
-		int limits[] = new int[sizes.size()];
+	private static void merge(List<String> resultsFiles, boolean failFast, int listLimit) throws IOException {
+		ResultSummary summary = new ResultSummary(listLimit, BEST_CANDIDATES);
 
-		int last = sizes.size() - 1;
-		for (int i = last; i >= 0; i--)
-			limits[i] = sizes.get(i) - 1;
+		for (String resultsFile : resultsFiles) {
+			File file = new File(resultsFile);
+			if (BinaryResultLog.isLog(file))
+				BinaryResultLog.read(file, summary::accept);
+			else
+				CandidateResult.read(file, summary::accept);
+		}
 
+		summary.printFailures(System.out, failFast, 0);
 
-		return () -> new Iterator<int[]>() {
-			int current[] = new int[last + 1];
+		System.out.println();
+		System.out.println(String.format("%s candidates merged from %s files", summary.getCount(), resultsFiles.size()));
+		System.out.println();
 
-			{
-				current[last]--;  // Force the first element
-			}
+		summary.printSuccesses(System.out, failFast);
+	}
 
-			@Override public boolean hasNext() {
-				return !Arrays.equals(limits, current);
-			}
+	/**
+	 * Times the original program (all the selectors with the variant 0) to find out how long a candidate can run
+	 * before considering it does not end (usually a loop condition that was mutated).
+	 * @return the time a candidate can run: the slowest of the baseline runs times the factor, but never less than the floor
+	 */
+	private static long adaptiveTimeout(CandidateRunner runner, int selectorCount, int factor, int floor) {
+		long baseline = 0;
+		CandidateResult result = null;
+
+		for (int i = 0; i < BASELINE_RUNS; i++) {
+			result = runner.run(new int[selectorCount]);
+			baseline = Math.max(baseline, result.getRunTime());
+		}
+
+		long timeout = Math.max(floor, baseline * factor);
+
+		System.out.println(String.format("Original program has %s failures out of %s runs in %s ms, candidates time out after %s ms",
+				result.getFailureCount(), result.getRunCount(), baseline, timeout));
+
+		return timeout;
+	}
+
+	/**
+	 * Execute the test for each option vector of the strategy, one after the other, in the current thread
+	 */
+	private static void runSequential(CandidateExecutor runner, SearchStrategy strategy, SearchBudget budget, ResultSink sink, boolean debug) {
+
+		for (int options[] : strategy) {
+			if (!budget.tryStart())
+				break;
+
+			if (debug)
+				System.out.println("Checking options: " + Arrays.toString(options));
+
+			CandidateResult result = runner.run(options);
+			budget.record(result);
+			sink.accept(result);
+			strategy.onResult(result);
+
+			if (runner.isBroken())
+				runner = runner.replacement();
+		}
+	}
+
+	/**
+	 * Execute the test for each option vector of the strategy using several workers. Each worker has its own copy of
+	 * the meta-program and takes the option vectors from a shared queue. The results reach the sink in the order they
+	 * are checked.
+	 * <br/>
+	 * A worker that fails (its runner, a sink or the strategy throws) stops the run: the others are interrupted and its
+	 * error is thrown as soon as it is found, instead of waiting for the queue forever.
+	 */
+	private static void runParallel(CandidateExecutor firstRunner, SearchStrategy strategy, SearchBudget budget, ResultSink sink,
+			int workers, boolean debug) throws InterruptedException {
+		BlockingQueue<Candidate> queue = new ArrayBlockingQueue<>(workers * 16);
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		List<Future<?>> futures = Lists.newArrayList();
+
+		for (int i = 0; i < workers; i++) {
+			// Each worker gets its own copy of the meta-program, with the same settings as the first one
+			CandidateExecutor workerRunner = i == 0 ? firstRunner : firstRunner.replacement();
+
+			futures.add(executor.submit(() -> {
+				CandidateExecutor runner = workerRunner;
+
+				for (Candidate candidate = queue.take(); candidate != Candidate.END; candidate = queue.take()) {
+					// Enough successes or no more time, the queued candidates are discarded
+					if (budget.isExhausted())
+						continue;
 
-			@Override public int[] next() {
-				for (int i = last; i >= 0; i--) {
-					if (current[i] < limits[i]) {
-						current[i] ++;
+					if (debug)
+						System.out.println("Checking options: " + Arrays.toString(candidate.options));
 
-						return current.clone();
-					}
-					current[i] = 0;
+					CandidateResult result = runner.run(candidate.options);
+					budget.record(result);
+					sink.accept(result);
+					strategy.onResult(result);
+
+					if (runner.isBroken())
+						runner = runner.replacement();
 				}
+				return null;
+			}));
+		}
+		executor.shutdown();
+
+		for (int options[] : strategy) {
+			if (!budget.tryStart())
+				break;
+
+			put(queue, new Candidate(options), futures, executor);
+		}
 
-				return new int[0];
+		for (int i = 0; i < workers; i++)
+			put(queue, Candidate.END, futures, executor);
+
+		for (Future<?> future : futures)
+			checkWorker(future, executor);
+	}
+
+	/**
+	 * Puts a candidate in the queue, checking the workers while it is full
+	 * @throws IllegalStateException if a worker failed
+	 */
+	private static void put(BlockingQueue<Candidate> queue, Candidate candidate, List<Future<?>> futures, ExecutorService executor) throws InterruptedException {
+		do {
+			for (Future<?> future : futures) {
+				// A worker that is done either failed or already took its END
+				if (future.isDone())
+					checkWorker(future, executor);
 			}
-		};
+		} while (!queue.offer(candidate, WORKER_CHECK_INTERVAL, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Waits for a worker to end
+	 * @throws IllegalStateException if it failed, after interrupting the other workers
+	 */
+	private static void checkWorker(Future<?> future, ExecutorService executor) throws InterruptedException {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			executor.shutdownNow();
+			throw new IllegalStateException("A worker failed", e.getCause());
+		}
+	}
+
+	private static int intArgument(List<String> arguments, String name, int defaultValue) {
+		return Integer.parseInt(stringArgument(arguments, name, String.valueOf(defaultValue)));
+	}
+
+	private static long longArgument(List<String> arguments, String name, long defaultValue) {
+		return Long.parseLong(stringArgument(arguments, name, String.valueOf(defaultValue)));
+	}
+
+	static String stringArgument(List<String> arguments, String name, String defaultValue) {
+		int position = arguments.indexOf(name);
+
+		return position >= 0 && position + 1 < arguments.size() ? arguments.get(position + 1) : defaultValue;
+	}
+
+	/** An option vector waiting in the queue for a worker */
+	private static class Candidate {
+		static final Candidate END = new Candidate(new int[0]);
+
+		final int[] options;
+
+		Candidate(int[] options) {
+			this.options = options;
+		}
 	}
 }
@@ -0,0 +1,44 @@
+package com.medallia.codefixer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link CoverageIndex} class
+ */
+public class CoverageIndexTest {
+
+	/** Verifies the outcome is known for any options with the same choices in the reached selectors */
+	@Test
+	public void testKnownOutcomeIgnoresSelectorsNotReached() {
+		CoverageIndex index = new CoverageIndex();
+		index.record("test", new int[] {0, 2}, new int[] {1, 0, 3}, false);
+
+		assertEquals(Boolean.FALSE, index.knownOutcome("test", new int[] {1, 4, 3}));
+		assertNull(index.knownOutcome("test", new int[] {1, 0, 2}));
+		assertNull(index.knownOutcome("other", new int[] {1, 0, 3}));
+	}
+
+	/** Verifies a test that reaches different selectors for different options keeps each coverage */
+	@Test
+	public void testSeveralCoveragesOfATest() {
+		CoverageIndex index = new CoverageIndex();
+		index.record("test", new int[] {0}, new int[] {0, 0}, true);
+		index.record("test", new int[] {0, 1}, new int[] {1, 2}, false);
+
+		assertEquals(Boolean.TRUE, index.knownOutcome("test", new int[] {0, 5}));
+		assertEquals(Boolean.FALSE, index.knownOutcome("test", new int[] {1, 2}));
+		assertNull(index.knownOutcome("test", new int[] {1, 1}));
+	}
+
+	/** Verifies a test that reaches no selector has the same outcome for all the options */
+	@Test
+	public void testNoSelectorReached() {
+		CoverageIndex index = new CoverageIndex();
+		index.record("test", new int[0], new int[] {0, 0}, true);
+
+		assertEquals(Boolean.TRUE, index.knownOutcome("test", new int[] {3, 1}));
+	}
+}
@@ -0,0 +1,76 @@
+package com.medallia.codefixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Ranks the hot spots of the meta-program by suspiciousness (spectrum based fault localization).
+ * <br/>
+ * It runs the tests once with the original program recording which hot spots each test reaches, and writes the
+ * ranking used by {@link MetaProgramGenerator} to convert only the most suspicious expressions into hot spots.
+ */
+public class FaultLocalizer {
+
+	public static final String DEFAULT_SUSPICIOUSNESS_FILE = "build/suspiciousness.tsv";
+
+	public static void main(String[] args) throws IOException {
+		List<String> arguments = ImmutableList.copyOf(args);
+		boolean tarantula = arguments.contains("tarantula");
+
+		CandidateRunner runner = CandidateRunner.shared(CodeFixer.PROGRAM_CLASS, CodeFixer.TEST_CLASS.getName(), false);
+		List<SelectorControl> selectors = runner.getSelectors();
+
+		Spectrum spectrum = new Spectrum(selectors.size());
+		runner.addCoverageRecorder(spectrum);
+		runner.run(new int[selectors.size()]);
+
+		if (spectrum.getTotalFailed() == 0)
+			System.out.println("The original program passes all the tests, all the expressions are equally suspicious");
+
+		Map<Integer, HotSpot> hotSpots = Maps.uniqueIndex(HotSpot.read(new File(System.getProperty(MetaProgramGenerator.HOT_SPOTS_PROPERTY, MetaProgramGenerator.DEFAULT_HOT_SPOTS_FILE))), HotSpot::getId);
+		IntToDoubleFunction formula = tarantula ? spectrum::tarantula : spectrum::ochiai;
+
+		List<Ranked> ranking = Lists.newArrayList();
+		for (int i = 0; i < selectors.size(); i++) {
+			HotSpot hotSpot = hotSpots.get(selectors.get(i).getHotSpot());
+			if (hotSpot != null)
+				ranking.add(new Ranked(hotSpot, formula.applyAsDouble(i)));
+		}
+		ranking.sort(Comparator.comparingDouble((Ranked ranked) -> ranked.score).reversed());
+
+		ranking.forEach(System.out::println);
+
+		File output = new File(System.getProperty(MetaProgramGenerator.SUSPICIOUSNESS_PROPERTY, DEFAULT_SUSPICIOUSNESS_FILE));
+		Files.write(output.toPath(), ranking.stream().map(Ranked::format).collect(Collectors.toList()), StandardCharsets.UTF_8);
+	}
+
+	/** A hot spot with its suspiciousness */
+	private static class Ranked {
+		final HotSpot hotSpot;
+		final double score;
+
+		Ranked(HotSpot hotSpot, double score) {
+			this.hotSpot = hotSpot;
+			this.score = score;
+		}
+
+		String format() {
+			return String.format("%.4f\t%s\t%s", score, hotSpot.getKey(), hotSpot);
+		}
+
+		@Override public String toString() {
+			return String.format("%.4f %s", score, hotSpot);
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package com.medallia.codefixer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+/**
+ * Runs the candidates in a worker JVM (see {@link ForkedWorker}), so a candidate that corrupts the static state,
+ * exhausts the heap or cannot be stopped does not affect the fixer.
+ * <br/>
+ * The worker loads the meta-program once and is reused for all the candidates, so the JVM start up and the JIT warm
+ * up are paid only once. The worker stops the candidates that exceed their time itself; if it does not answer some
+ * time after that, or it ends, it is killed and the runner is {@link #isBroken() broken}, it should be replaced with
+ * {@link #replacement()}.
+ */
+public class ForkedRunner implements CandidateExecutor {
+	/** The time the worker can take to answer after the candidate timeout, before it is considered lost */
+	private static final long EXTRA_TIME = 5_000;
+
+	private final List<String> command;
+	private final long timeout;
+
+	private final Process process;
+	private final Writer requests;
+	private final BufferedReader replies;
+	private final ExecutorService replyReader;
+	private final int testCount;
+	private final List<List<String>> variants;
+
+	private ResultCache resultCache;
+	private boolean broken;
+
+	private ForkedRunner(List<String> command, long timeout) throws IOException {
+		this.command = command;
+		this.timeout = timeout;
+
+		process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		requests = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+		replies = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+		replyReader = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "forked-worker-replies");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		String ready = replies.readLine();
+		List<String> fields = ready == null ? ImmutableList.of() : Splitter.on('\t').splitToList(ready);
+		if (fields.size() != 3 || !fields.get(0).equals(ForkedWorker.READY)) {
+			process.destroyForcibly();
+			throw new IOException("The worker did not start: " + ready);
+		}
+
+		testCount = Integer.parseInt(fields.get(1));
+		variants = Lists.newArrayList();
+		for (String selectorVariants : Splitter.on(';').split(fields.get(2)))
+			variants.add(Splitter.on(',').splitToList(selectorVariants));
+	}
+
+	/**
+	 * Starts a worker JVM with the same class path as this one
+	 * @param timeout the time in ms a candidate can run before being aborted
+	 * @param failFast true to stop each candidate at its first failing test
+	 * @param coverage true to use a {@link CoverageIndex} in the worker
+	 */
+	public static ForkedRunner start(String programClassName, String testClassName, long timeout, boolean failFast, boolean coverage, boolean debug)
+			throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+		List<String> command = ImmutableList.of(java, "-cp", System.getProperty("java.class.path"), ForkedWorker.class.getName(),
+			programClassName, testClassName, String.valueOf(timeout), String.valueOf(failFast), String.valueOf(coverage), String.valueOf(debug));
+
+		return new ForkedRunner(command, timeout);
+	}
+
+	/**
+	 * @return a runner with a new worker JVM, to be used instead of a broken one
+	 */
+	@Override public ForkedRunner replacement() {
+		try {
+			ForkedRunner runner = new ForkedRunner(command, timeout);
+			runner.setResultCache(resultCache);
+			return runner;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot start a new worker", e);
+		}
+	}
+
+	/**
+	 * @param resultCache where to look for the results of candidates checked before and to keep the new ones. It can
+	 * be shared with other runners.
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	@Override public boolean isBroken() {
+		return broken;
+	}
+
+	/**
+	 * Sends the options to the worker and waits for its result
+	 * @param options the option to choose for each selector
+	 * @return the result of the test run, or the one in the result cache if the candidate was checked before
+	 */
+	@Override public CandidateResult run(int[] options) {
+		if (resultCache == null)
+			return runInWorker(options);
+
+		CandidateResult result = resultCache.get(options);
+		if (result == null) {
+			result = runInWorker(options);
+			resultCache.put(result);
+		}
+
+		return result;
+	}
+
+	private CandidateResult runInWorker(int[] options) {
+		if (broken)
+			throw new IllegalStateException("The worker was lost by a previous candidate");
+
+		long startTime = System.currentTimeMillis();
+
+		try {
+			requests.write(Ints.join(",", options));
+			requests.write('\n');
+			requests.flush();
+
+			Future<String> reply = replyReader.submit(replies::readLine);
+			String line = reply.get(timeout + EXTRA_TIME, TimeUnit.MILLISECONDS);
+			if (line != null)
+				return CandidateResult.parse(line);
+		} catch (TimeoutException e) {
+			kill();
+			return new CandidateResult(options, namedOptions(options), testCount, testCount, System.currentTimeMillis() - startTime, true, testCount);
+		} catch (IOException | ExecutionException e) {
+			// The worker ended, the candidate fails
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the worker", e);
+		}
+
+		kill();
+		return new CandidateResult(options, namedOptions(options), testCount, testCount, System.currentTimeMillis() - startTime, false, testCount);
+	}
+
+	private String[] namedOptions(int[] options) {
+		String[] namedOptions = new String[options.length];
+
+		for (int i = 0; i < options.length; i++)
+			namedOptions[i] = variants.get(i).get(options[i]);
+
+		return namedOptions;
+	}
+
+	private void kill() {
+		broken = true;
+		replyReader.shutdownNow();
+		process.destroyForcibly();
+	}
+}
@@ -0,0 +1,70 @@
+package com.medallia.codefixer;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+/**
+ * The program run by each {@link ForkedRunner} process: loads the meta-program once and runs the tests for each
+ * option vector read from the standard input (one per line, comma separated), writing each result to the standard
+ * output (as {@link CandidateResult#format()}).
+ * <br/>
+ * The first line written describes the meta-program: "READY", the number of tests and the variants of each selector.
+ * The output of the tests goes to the standard error. The worker ends when its standard input is closed.
+ * <br/>
+ * Usage: ForkedWorker programClass testClass timeout failFast coverage debug
+ */
+public class ForkedWorker {
+	static final String READY = "READY";
+
+	public static void main(String[] args) throws IOException {
+		PrintStream replies = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8.name());
+		System.setOut(System.err);
+
+		CandidateRunner runner = CandidateRunner.shared(args[0], args[1], Boolean.parseBoolean(args[5]));
+		runner.setTimeout(Long.parseLong(args[2]));
+		runner.setFailFast(Boolean.parseBoolean(args[3]));
+		if (Boolean.parseBoolean(args[4]))
+			runner.setCoverageIndex(new CoverageIndex());
+		runner.setFailureHistory(new FailureHistory());
+
+		replies.println(Joiner.on('\t').join(READY, runner.getTestCount(), describeVariants(runner.getSelectors())));
+
+		BufferedReader requests = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		for (String line = requests.readLine(); line != null; line = requests.readLine()) {
+			int[] options = Splitter.on(',').omitEmptyStrings().splitToList(line).stream().mapToInt(Integer::parseInt).toArray();
+
+			CandidateResult result = runner.run(options);
+			replies.println(result.format());
+
+			if (runner.isBroken())
+				runner = runner.replacement();
+		}
+	}
+
+	/**
+	 * @return the variants of each selector, comma separated, with the selectors separated by ';'
+	 */
+	private static String describeVariants(List<SelectorControl> selectors) {
+		List<String> descriptions = Lists.newArrayList();
+
+		for (SelectorControl selector : selectors) {
+			List<String> variants = Lists.newArrayList();
+			for (int i = 0; i < selector.getOptionCount(); i++)
+				variants.add(selector.getOptionDescription(i));
+
+			descriptions.add(Joiner.on(',').join(variants));
+		}
+
+		return Joiner.on(';').join(descriptions);
+	}
+}
@@ -0,0 +1,106 @@
+package com.medallia.codefixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import spoon.Launcher;
+
+/**
+ * Generates the meta-program, compiles it with the tests and checks the candidates in a single JVM, without writing
+ * the meta-program to the source tree (spoonFiles, compileTest and fix in one step).
+ * <br/>
+ * Usage: InMemoryFixer [--input samplesDir] [--tests testSourcesDir] [CodeFixer arguments]
+ * <br/>
+ * The tests are the sources in the package of {@link CodeFixer#TEST_CLASS} in the test sources directory, except the
+ * ones replaced by the meta-program (a meta-program generated before by spoonFiles).
+ */
+public class InMemoryFixer {
+
+	public static void main(String[] args) throws Exception {
+		List<String> arguments = ImmutableList.copyOf(args);
+		String input = CodeFixer.stringArgument(arguments, "--input", "src/samples/prototype");
+		String tests = CodeFixer.stringArgument(arguments, "--tests", "src/test/java");
+
+		RunMetrics metrics = new RunMetrics();
+		CodeFixer.fix(arguments, programLoaders(compileMetaProgram(input, tests, metrics)), metrics);
+	}
+
+	/**
+	 * Generates the meta-program of the samples and compiles it with the tests
+	 * @param metrics where to record the time of the generation and the compilation
+	 * @return the classes of the meta-program and of the tests, by qualified name
+	 */
+	static Map<String, byte[]> compileMetaProgram(String input, String tests, RunMetrics metrics) throws IOException, InterruptedException {
+		long startTime = System.currentTimeMillis();
+
+		Map<String, String> sources = generate(input);
+		int generated = sources.size();
+		addTests(new File(tests), sources);
+
+		long compilationStartTime = System.currentTimeMillis();
+		metrics.recordPhase("generation", compilationStartTime - startTime);
+
+		Map<String, byte[]> classes = InMemoryCompiler.compile(sources);
+
+		metrics.recordPhase("compilation", System.currentTimeMillis() - compilationStartTime);
+
+		System.out.println(String.format("Meta-program generated (%s classes) and compiled with %s tests in %s ms",
+				generated, sources.size() - generated, System.currentTimeMillis() - startTime));
+
+		return classes;
+	}
+
+	/**
+	 * @return class loaders for the compiled meta-program, each one with its own copy of the meta-program and of the
+	 * selectors
+	 */
+	static Supplier<ClassLoader> programLoaders(Map<String, byte[]> classes) {
+		return () -> new InMemoryClassLoader(
+				new IsolatingClassLoader(InMemoryFixer.class.getClassLoader(), ImmutableList.of(Selector.class.getName())), classes);
+	}
+
+	/**
+	 * Runs {@link MetaProgramGenerator} on the sources, a thread per core
+	 * @return the source code of each class of the meta-program, by qualified name
+	 */
+	private static Map<String, String> generate(String input) throws IOException, InterruptedException {
+		Launcher launcher = new Launcher();
+		launcher.setArgs(new String[] {"--tabs", "--with-imports", "-i", input});
+		launcher.buildModel();
+
+		HotSpotRanges ranges = HotSpotRanges.read(MetaProgramGenerator.rangesFile());
+		List<HotSpot> hotSpots = Lists.newArrayList();
+		Map<String, String> sources = Maps.newHashMap();
+
+		for (ParallelGenerator.GeneratedType generated : ParallelGenerator.generate(launcher.getFactory(), ranges, Runtime.getRuntime().availableProcessors())) {
+			sources.put(generated.getType().getQualifiedName(), generated.getSource());
+			hotSpots.addAll(generated.getHotSpots());
+		}
+
+		ranges.write(MetaProgramGenerator.rangesFile());
+		HotSpot.write(new File(System.getProperty(MetaProgramGenerator.HOT_SPOTS_PROPERTY, MetaProgramGenerator.DEFAULT_HOT_SPOTS_FILE)), hotSpots);
+
+		return sources;
+	}
+
+	private static void addTests(File testSources, Map<String, String> sources) throws IOException {
+		String testPackage = CodeFixer.TEST_CLASS.getPackage().getName();
+		File[] files = new File(testSources, testPackage.replace('.', File.separatorChar)).listFiles((dir, name) -> name.endsWith(".java"));
+		if (files == null)
+			throw new IOException("There are no tests in " + testSources);
+
+		for (File file : files) {
+			String className = testPackage + "." + file.getName().substring(0, file.getName().length() - ".java".length());
+			if (!sources.containsKey(className))
+				sources.put(className, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.medallia.codefixer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.collect.Maps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the {@link IncrementalGenerator} class
+ */
+public class IncrementalGeneratorTest {
+	private static final Path SAMPLES = Paths.get("src/samples/prototype");
+	private static final String PACKAGE = "incremental";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Properties properties;
+	private File input;
+	private File output;
+	private String[] arguments;
+
+	@Before
+	public void setUp() throws IOException {
+		properties = (Properties) System.getProperties().clone();
+		System.setProperty(MetaProgramGenerator.RANGES_PROPERTY, new File(folder.getRoot(), "hotspot-ranges.tsv").getPath());
+		System.setProperty(MetaProgramGenerator.HOT_SPOTS_PROPERTY, new File(folder.getRoot(), "hotspots.tsv").getPath());
+
+		input = folder.newFolder("input");
+		output = folder.newFolder("output");
+		// In another package, so its types cannot be found in the class path (the meta-program of the tests)
+		try (Stream<Path> files = Files.list(SAMPLES)) {
+			for (Path file : files.collect(Collectors.toList())) {
+				String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).replace("package prototype;", "package " + PACKAGE + ";");
+				Files.write(input.toPath().resolve(file.getFileName()), source.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		arguments = new String[] {"-i", input.getPath(), "-o", output.getPath(), "--cache", new File(folder.getRoot(), "cache").getPath(), "--threads", "1"};
+	}
+
+	@After
+	public void tearDown() {
+		System.setProperties(properties);
+	}
+
+	/** Verifies the meta-program compiles when only a file changed, its references to the unchanged types are resolved */
+	@Test
+	public void testOneFileChanged() throws Exception {
+		IncrementalGenerator.main(arguments);
+		Map<String, String> first = sourcesOf(output);
+
+		Path navigator = input.toPath().resolve("GsonObjectTreeNavigator.java");
+		String source = new String(Files.readAllBytes(navigator), StandardCharsets.UTF_8);
+		String line = "return getString(fieldPath, null);";
+		assertTrue(source.contains(line));
+		Files.write(navigator, source.replace(line, "return getString(fieldPath, (String) null);").getBytes(StandardCharsets.UTF_8));
+
+		IncrementalGenerator.main(arguments);
+		Map<String, String> second = sourcesOf(output);
+
+		assertEquals(first.keySet(), second.keySet());
+		assertFalse(first.get(PACKAGE + ".GsonObjectTreeNavigator").equals(second.get(PACKAGE + ".GsonObjectTreeNavigator")));
+		assertEquals(first.get(PACKAGE + ".PathBatch"), second.get(PACKAGE + ".PathBatch"));
+		// Fails if a reference to an unchanged type is not resolved
+		assertFalse(InMemoryCompiler.compile(second).isEmpty());
+	}
+
+	/** @return the source of each file in the directory, by the qualified name of its type */
+	private static Map<String, String> sourcesOf(File directory) throws IOException {
+		Map<String, String> sources = Maps.newTreeMap();
+
+		try (Stream<Path> files = Files.walk(directory.toPath())) {
+			for (Path file : files.filter(path -> path.toString().endsWith(".java")).collect(Collectors.toList())) {
+				String name = directory.toPath().relativize(file).toString();
+				sources.put(name.substring(0, name.length() - ".java".length()).replace(File.separatorChar, '.'), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			}
+		}
+
+		return sources;
+	}
+}
@@ -0,0 +1,115 @@
+package com.medallia.codefixer;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the {@link PatchWriter} class
+ */
+public class PatchWriterTest {
+	private static final String SOURCE = Joiner.on('\n').join(
+		"class Sample {",
+		"	boolean sameLine(int a, int b) {",
+		"		return a < b && b <= 10;",
+		"	}",
+		"",
+		"	boolean parentheses(int a, int b) {",
+		"		return (a < b) && (b > 0 || a == 1);",
+		"	}",
+		"",
+		"	boolean literal(String s, int a) {",
+		"		return a < 2 || s == \"x || y\";",
+		"	}",
+		"",
+		"	boolean comment(int a, int b) {",
+		"		return a < 2 || /* a || b */ b > 0;",
+		"	}",
+		"}",
+		"");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File sourceFile;
+
+	@Before
+	public void setUp() throws IOException {
+		sourceFile = folder.newFile("Sample.java");
+		Files.write(sourceFile.toPath(), SOURCE.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Verifies several operators of the same line are replaced, even when a replacement is shorter than its operator */
+	@Test
+	public void testSeveralOperatorsInALine() throws IOException {
+		List<HotSpot> hotSpots = Arrays.asList(
+			hotSpotOf(0, "a < b && b <= 10", "AND", "OR"),
+			hotSpotOf(1, "a < b", "LT", "LE"),
+			hotSpotOf(2, "b <= 10", "LE", "LT"));
+
+		String patch = patchOf(hotSpots, 1, 1, 1);
+
+		assertTrue(patch, patch.contains("\n-\t\treturn a < b && b <= 10;\n+\t\treturn a <= b || b < 10;\n"));
+		assertTrue(patch, patch.contains("\n@@ -1,6 +1,6 @@\n"));
+	}
+
+	/** Verifies the operator of a hot spot is the one out of the parentheses, not the one of an operand */
+	@Test
+	public void testOperatorsInParentheses() throws IOException {
+		List<HotSpot> hotSpots = Arrays.asList(
+			hotSpotOf(0, "(a < b) && (b > 0 || a == 1)", "AND", "OR"),
+			hotSpotOf(1, "b > 0 || a == 1", "OR", "AND"));
+
+		assertTrue(patchOf(hotSpots, 1, 0).contains("\n+\t\treturn (a < b) || (b > 0 || a == 1);\n"));
+		assertTrue(patchOf(hotSpots, 0, 1).contains("\n+\t\treturn (a < b) && (b > 0 && a == 1);\n"));
+	}
+
+	/** Verifies the operators in string literals and comments are ignored */
+	@Test
+	public void testStringLiteralsAndComments() throws IOException {
+		List<HotSpot> hotSpots = Arrays.asList(
+			hotSpotOf(0, "a < 2 || s == \"x || y\"", "OR", "AND"),
+			hotSpotOf(1, "a < 2 || /* a || b */ b > 0", "OR", "AND"));
+
+		assertTrue(patchOf(hotSpots, 1, 0).contains("\n+\t\treturn a < 2 && s == \"x || y\";\n"));
+		assertTrue(patchOf(hotSpots, 0, 1).contains("\n+\t\treturn a < 2 && /* a || b */ b > 0;\n"));
+	}
+
+	/** Verifies the change of a selector without hot spot is reported instead of failing */
+	@Test
+	public void testUnknownHotSpot() throws IOException {
+		List<HotSpot> hotSpots = Arrays.asList(hotSpotOf(0, "a < b", "LT", "LE"), null);
+
+		String patch = patchOf(hotSpots, 1, 1);
+
+		assertTrue(patch, patch.contains("The selector 1 is not in the hot spots file"));
+		assertTrue(patch, patch.contains("\n+\t\treturn a <= b && b <= 10;\n"));
+	}
+
+	private String patchOf(List<HotSpot> hotSpots, int... options) throws IOException {
+		String[] names = new String[options.length];
+		for (int i = 0; i < options.length; i++)
+			names[i] = hotSpots.get(i) == null ? "n/a" : hotSpots.get(i).getVariants().get(options[i]);
+
+		return new PatchWriter(folder.newFolder(), hotSpots).patchOf(new CandidateResult(options, names, 1, 0, 0, false));
+	}
+
+	/** @return the hot spot of the first occurrence of the expression in the source */
+	private HotSpot hotSpotOf(int id, String expression, String... variants) {
+		int start = SOURCE.indexOf(expression);
+		int line = SOURCE.substring(0, start).split("\n", -1).length;
+
+		return new HotSpot(id, sourceFile.getPath(), line, start, start + expression.length() - 1, Arrays.asList(variants), expression);
+	}
+}
@@ -0,0 +1,155 @@
+package com.medallia.codefixer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the {@link ResultCache} class
+ */
+public class ResultCacheTest {
+	private static final long TIMEOUT = 1_000;
+	private static final List<List<String>> VARIANTS = Arrays.asList(Arrays.asList("LT", "LE", "GT"), Arrays.asList("AND", "OR"));
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Verifies the results are found by their options when the file is read again */
+	@Test
+	public void testReload() throws IOException {
+		File file = folder.newFile("candidates.cache");
+		try (ResultCache cache = new ResultCache(file, "a", TIMEOUT, VARIANTS)) {
+			for (int i = 0; i < 3; i++) {
+				for (int j = 0; j < 2; j++)
+					cache.put(result(i, j));
+			}
+			assertEquals(5, cache.get(new int[] {2, 1}).getFailureCount());
+		}
+
+		try (ResultCache cache = new ResultCache(file, "a", TIMEOUT, VARIANTS)) {
+			assertEquals(6, cache.getLoadedCount());
+
+			CandidateResult result = cache.get(new int[] {2, 1});
+			assertArrayEquals(new int[] {2, 1}, result.getOptions());
+			assertArrayEquals(new String[] {"GT", "OR"}, result.getNamedOptions());
+			assertEquals(5, result.getFailureCount());
+			assertEquals(20, result.getRunTime());
+			assertArrayEquals(new long[] {3, 300}, result.getSelectorHits());
+			assertEquals(1, cache.getHitCount());
+		}
+	}
+
+	/** Verifies the results of another meta-program or other settings are not used */
+	@Test
+	public void testFingerprintMismatch() throws IOException {
+		File file = folder.newFile("candidates.cache");
+		try (ResultCache cache = new ResultCache(file, "a", TIMEOUT, VARIANTS)) {
+			cache.put(result(1, 1));
+		}
+
+		try (ResultCache cache = new ResultCache(file, "b", TIMEOUT, VARIANTS)) {
+			assertEquals(0, cache.getLoadedCount());
+			assertNull(cache.get(new int[] {1, 1}));
+		}
+	}
+
+	/** Verifies a record truncated by a crash is dropped and the next results are kept after the complete ones */
+	@Test
+	public void testTruncatedRecord() throws IOException {
+		File file = folder.newFile("candidates.cache");
+		try (ResultCache cache = new ResultCache(file, "a", TIMEOUT, VARIANTS)) {
+			cache.put(result(0, 1));
+			cache.put(result(1, 0));
+		}
+		try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+			truncated.setLength(truncated.length() - 2);
+		}
+
+		try (ResultCache cache = new ResultCache(file, "a", TIMEOUT, VARIANTS)) {
+			assertEquals(1, cache.getLoadedCount());
+			assertNull(cache.get(new int[] {1, 0}));
+			cache.put(result(2, 0));
+		}
+
+		try (ResultCache cache = new ResultCache(file, "a", TIMEOUT, VARIANTS)) {
+			assertEquals(2, cache.getLoadedCount());
+			assertEquals(4, cache.get(new int[] {2, 0}).getFailureCount());
+		}
+	}
+
+	/** Verifies many results can be found, as the table grows */
+	@Test
+	public void testManyResults() throws IOException {
+		CandidateSpace space = new CandidateSpace(Collections.nCopies(12, 2));
+		try (ResultCache cache = new ResultCache(folder.newFile("candidates.cache"), "a", TIMEOUT, Collections.nCopies(12, Arrays.asList("LT", "LE")))) {
+			for (long index = 0; index < space.size(); index++)
+				cache.put(new CandidateResult(space.decode(index), new String[12], 1, (int) index, 0, false));
+
+			for (long index = 0; index < space.size(); index++)
+				assertEquals(index, cache.get(space.decode(index)).getFailureCount());
+		}
+	}
+
+	/** Verifies only the results that could be different with a new timeout are dropped */
+	@Test
+	public void testTimeoutChange() throws IOException {
+		File file = folder.newFile("candidates.cache");
+		try (ResultCache cache = new ResultCache(file, "a", TIMEOUT, VARIANTS)) {
+			cache.put(new CandidateResult(new int[] {0, 0}, new String[] {"LT", "AND"}, 6, 0, 100, false));
+			cache.put(new CandidateResult(new int[] {0, 1}, new String[] {"LT", "OR"}, 6, 0, 800, false));
+			cache.put(new CandidateResult(new int[] {1, 0}, new String[] {"LE", "AND"}, 6, 6, 1_000, true));
+		}
+
+		try (ResultCache cache = new ResultCache(file, "a", 500, VARIANTS)) {
+			assertEquals(2, cache.getLoadedCount());
+			assertNull(cache.get(new int[] {0, 1}));
+			assertTrue(cache.get(new int[] {1, 0}).isTimedOut());
+		}
+
+		try (ResultCache cache = new ResultCache(file, "a", 2_000, VARIANTS)) {
+			assertEquals(1, cache.getLoadedCount());
+			assertNull(cache.get(new int[] {1, 0}));
+		}
+	}
+
+	/** Verifies the fingerprint changes with the settings */
+	@Test
+	public void testFingerprintSettings() throws IOException {
+		ClassLoader loader = getClass().getClassLoader();
+		List<String> classes = Arrays.asList(ResultCache.class.getName());
+
+		assertEquals(ResultCache.fingerprint(loader, classes, true, true), ResultCache.fingerprint(loader, classes, true, true));
+		assertNotEquals(ResultCache.fingerprint(loader, classes, true, true), ResultCache.fingerprint(loader, classes, false, true));
+		assertNotEquals(ResultCache.fingerprint(loader, classes, true, true), ResultCache.fingerprint(loader, classes, true, false));
+	}
+
+	/** Verifies the fingerprint of a class includes its nested and anonymous classes */
+	@Test
+	public void testFingerprintNestedClasses() throws IOException {
+		List<String> classes = Arrays.asList("a.B");
+		String fingerprint = ResultCache.fingerprint(new InMemoryClassLoader(null, ImmutableMap.of("a.B", new byte[] {1}, "a.B$1", new byte[] {2})), classes);
+
+		assertEquals(fingerprint, ResultCache.fingerprint(new InMemoryClassLoader(null, ImmutableMap.of("a.B", new byte[] {1}, "a.B$1", new byte[] {2}, "a.C", new byte[] {3})), classes));
+		assertNotEquals(fingerprint, ResultCache.fingerprint(new InMemoryClassLoader(null, ImmutableMap.of("a.B", new byte[] {1}, "a.B$1", new byte[] {3})), classes));
+		assertNotEquals(fingerprint, ResultCache.fingerprint(new InMemoryClassLoader(null, ImmutableMap.of("a.B", new byte[] {1}, "a.B$1", new byte[] {2}, "a.B$C", new byte[] {3})), classes));
+	}
+
+	private static CandidateResult result(int first, int second) {
+		return new CandidateResult(new int[] {first, second}, new String[] {VARIANTS.get(0).get(first), VARIANTS.get(1).get(second)},
+			6, first * 2 + second, first * 10, false, 6, new long[] {3, first * 100 + second * 100});
+	}
+}
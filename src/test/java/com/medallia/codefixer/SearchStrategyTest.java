@@ -0,0 +1,119 @@
+package com.medallia.codefixer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import org.junit.Test;
+
+/**
+ * Test the {@link SearchStrategy} implementations and the {@link SearchBudget}
+ */
+public class SearchStrategyTest {
+	private static final List<Integer> SIZES = Arrays.asList(2, 1, 3);
+
+	/** Verifies the exhaustive search checks all the combinations once, starting with the original */
+	@Test
+	public void testExhaustive() {
+		List<List<Integer>> candidates = candidatesOf(new ExhaustiveSearch(SIZES));
+
+		assertEquals(6, candidates.size());
+		assertEquals(6, Sets.newHashSet(candidates).size());
+		assertEquals(Arrays.asList(0, 0, 0), candidates.get(0));
+		assertEquals(Arrays.asList(1, 0, 2), candidates.get(5));
+	}
+
+	/** Verifies the mutation distance search checks the candidates by the number of selectors changed */
+	@Test
+	public void testSingleFirst() {
+		List<List<Integer>> candidates = candidatesOf(SearchStrategy.named("single-first", SIZES, 0));
+
+		assertEquals(6, candidates.size());
+		assertEquals(6, Sets.newHashSet(candidates).size());
+		assertEquals(Arrays.asList(0, 0, 0), candidates.get(0));
+		for (int i = 1; i < candidates.size(); i++)
+			assertTrue(changes(candidates.get(i - 1)) <= changes(candidates.get(i)));
+	}
+
+	/** Verifies the pairwise search only checks the candidates with up to two selectors changed */
+	@Test
+	public void testPairwise() {
+		List<Integer> sizes = Arrays.asList(2, 2, 2, 2);
+		List<List<Integer>> candidates = candidatesOf(SearchStrategy.named("pairwise", sizes, 0));
+
+		// 1 original, 4 with one change and 6 with two
+		assertEquals(11, candidates.size());
+		for (List<Integer> candidate : candidates)
+			assertTrue(changes(candidate) <= 2);
+	}
+
+	/** Verifies the pairwise search does not depend on the size of the whole space */
+	@Test
+	public void testPairwiseOfAHugeSpace() {
+		List<Integer> sizes = Lists.newArrayList();
+		for (int i = 0; i < 100; i++)
+			sizes.add(3);
+
+		// 1 original, 100 * 2 with one change and 4950 * 4 with two
+		assertEquals(20001, candidatesOf(SearchStrategy.named("pairwise", sizes, 0)).size());
+	}
+
+	/** Verifies the guided search never repeats a candidate and ends when the space was checked */
+	@Test
+	public void testGuided() {
+		List<List<Integer>> candidates = candidatesOf(SearchStrategy.named("guided", SIZES, 42));
+
+		assertEquals(Arrays.asList(0, 0, 0), candidates.get(0));
+		assertEquals(6, candidates.size());
+		assertEquals(6, Sets.newHashSet(candidates).size());
+	}
+
+	/** Verifies the budget stops the search after the maximum number of candidates or successes */
+	@Test
+	public void testBudget() {
+		SearchBudget candidates = new SearchBudget(2, Long.MAX_VALUE, Integer.MAX_VALUE);
+		assertTrue(candidates.tryStart());
+		assertTrue(candidates.tryStart());
+		assertFalse(candidates.tryStart());
+
+		SearchBudget successes = new SearchBudget(Long.MAX_VALUE, Long.MAX_VALUE, 1);
+		assertTrue(successes.tryStart());
+		successes.record(new CandidateResult(new int[1], new String[] {"LT"}, 3, 1, 0, false));
+		assertFalse(successes.isExhausted());
+		successes.record(new CandidateResult(new int[1], new String[] {"LT"}, 3, 0, 0, false));
+		assertTrue(successes.isExhausted());
+		assertFalse(successes.tryStart());
+	}
+
+	/** Verifies a timed out candidate is not a success */
+	@Test
+	public void testBudgetIgnoresTimedOutCandidates() {
+		SearchBudget budget = new SearchBudget(Long.MAX_VALUE, Long.MAX_VALUE, 1);
+		budget.record(new CandidateResult(new int[1], new String[] {"LT"}, 3, 0, 0, true));
+
+		assertFalse(budget.isExhausted());
+	}
+
+	private static List<List<Integer>> candidatesOf(SearchStrategy strategy) {
+		List<List<Integer>> candidates = Lists.newArrayList();
+		for (int[] options : strategy)
+			candidates.add(Ints.asList(options.clone()));
+
+		return candidates;
+	}
+
+	private static int changes(List<Integer> options) {
+		int changes = 0;
+		for (int option : options) {
+			if (option != 0)
+				changes++;
+		}
+		return changes;
+	}
+}
@@ -0,0 +1,45 @@
+package prototype;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+/**
+ * Test the {@link CompiledPath} class
+ */
+public class CompiledPathTest {
+	private static final JsonParser PARSER = new JsonParser();
+
+	/** Verifies a compiled path can be followed in several trees */
+	@Test
+	public void testCompiledPath() {
+		CompiledPath path = CompiledPath.compile("errors[1].description");
+		ObjectTreeNavigator first = makeNavigatorFor("{'errors':[{'description':'An error'}, {'description':'Other error'}]}");
+		ObjectTreeNavigator second = makeNavigatorFor("{'errors':[{'description':'First'}, {'description':'Second'}]}");
+
+		assertEquals("Other error", first.getString(path));
+		assertEquals("Second", second.getString(path));
+		assertEquals("errors[1].description", path.toString());
+	}
+
+	/** Verifies the steps of a compiled path, the empty ones are ignored and the numbers are also indexes */
+	@Test
+	public void testCompiledPathSteps() {
+		CompiledPath path = CompiledPath.compile("..a[2]..b...[c]");
+
+		assertEquals(4, path.size());
+		assertEquals("a", path.name(0));
+		assertEquals(2, path.index(1));
+		assertEquals("b", path.name(2));
+		assertEquals("c", path.name(3));
+	}
+
+	/**
+	 * @param jsonText the JSON as a string. Single quotes will be replaced with double quotes to make the JSON literal more readable in the code.
+	 * @return a {@link ObjectTreeNavigator} for the give JSON as a string.
+	 */
+	private ObjectTreeNavigator makeNavigatorFor(String jsonText) {
+		return new GsonObjectTreeNavigator(PARSER.parse(jsonText.replace('\'', '"')));
+	}
+}
@@ -3,9 +3,15 @@ package prototype;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
 
+import com.google.common.collect.Lists;
 import com.google.gson.JsonParser;
 import org.junit.Test;
 
@@ -148,6 +154,77 @@ public class GsonObjectTreeNavigatorTest {
 		assertFalse(iterator.hasNext());
 	}
 
+	/** Verifies a number is the name of a field in an object */
+	@Test
+	public void testNumberAsFieldName() {
+		ObjectTreeNavigator navigator = makeNavigatorFor("{'2015':{'course':'ECI'}}");
+		assertEquals("ECI", navigator.getString("[2015].course"));
+	}
+
+	/** Verifies getting an array element with an index that is not a number */
+	@Test(expected = NumberFormatException.class)
+	public void testNonNumericIndex() {
+		ObjectTreeNavigator navigator = makeNavigatorFor("[10,20,30,'aa', 40]");
+		navigator.getString("[first]");
+	}
+
+	/** Test the fields of an object, read through the map and iterated in their order */
+	@Test
+	public void testGettingTheFields() {
+		ObjectTreeNavigator navigator = makeNavigatorFor("{'customer':{'name':'Charly','age':40,'address':{'city':'Tandil'},'email':null}}");
+
+		Map<String, ObjectTreeNavigator> fields = navigator.getFieldsForObject("customer");
+
+		assertEquals(4, fields.size());
+		assertEquals("Charly", fields.get("name").getString(""));
+		assertEquals("Tandil", fields.get("address").getString("city"));
+		assertTrue(fields.containsKey("email"));
+		assertFalse(fields.containsKey("phone"));
+		assertNull(fields.get("phone"));
+		assertEquals(Arrays.asList("name", "age", "address", "email"), Lists.newArrayList(fields.keySet()));
+		assertTrue(navigator.getFieldsForObject("missing").isEmpty());
+	}
+
+	/** Test accessing to the elements of an array through a cursor, a single navigator moved to each element */
+	@Test
+	public void testGettingACursor() {
+		ObjectTreeNavigator navigator = makeNavigatorFor("{'total':40, 'items':[{'a':10,'name':'Charly'},{'a':20,'name':'Fernando'},{'a':30,'name':'Richard'}]}");
+
+		Iterator<ObjectTreeNavigator> iterator = navigator.getCursor("items").iterator();
+
+		ObjectTreeNavigator first = iterator.next();
+		assertEquals("Charly", first.getString("name"));
+		ObjectTreeNavigator second = iterator.next();
+		assertSame(first, second);
+		assertEquals("Fernando", second.getString("name"));
+		assertEquals(30, iterator.next().getInt("a"));
+		assertFalse(iterator.hasNext());
+		assertFalse(navigator.getCursor("missing").iterator().hasNext());
+	}
+
+	/** Verifies the spliterator of an array splits it in two halves of its index range */
+	@Test
+	public void testSplittingAnArray() {
+		ObjectTreeNavigator navigator = makeNavigatorFor("{'items':[{'a':10},{'a':20},{'a':30},{'a':40},{'a':50}]}");
+
+		Spliterator<ObjectTreeNavigator> second = navigator.getSpliterator("items");
+		Spliterator<ObjectTreeNavigator> first = second.trySplit();
+
+		assertEquals(2, first.estimateSize());
+		assertEquals(3, second.estimateSize());
+		assertTrue(second.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+		first.tryAdvance(element -> assertEquals(10, element.getInt("a")));
+		second.tryAdvance(element -> assertEquals(30, element.getInt("a")));
+		assertEquals(1, first.estimateSize());
+		assertNull(first.trySplit());
+		assertEquals(0, navigator.getSpliterator("missing").estimateSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStreamOfNotAnArray() {
+		makeNavigatorFor("{'items':{'a':10}}").getStream("items");
+	}
+
 	/**
 	 * @param jsonText the JSON as a string. Single quotes will be replaced with double quotes to make the JSON literal more readable in the code.
 	 * @return a {@link ObjectTreeNavigator} for the give JSON as a string.
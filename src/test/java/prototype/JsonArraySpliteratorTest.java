@@ -0,0 +1,35 @@
+package prototype;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+/**
+ * Test the parallel streams of the navigators ({@link JsonArraySpliterator}). They are not in
+ * {@link GsonObjectTreeNavigatorTest}, the tests the fixer runs, since they run the navigator in other threads
+ */
+public class JsonArraySpliteratorTest {
+	private static final JsonParser PARSER = new JsonParser();
+
+	/** Verifies the elements of an array can be read by a parallel stream */
+	@Test
+	public void testParallelStream() {
+		StringBuilder json = new StringBuilder("{'items':[");
+		for (int i = 1; i <= 1000; i++)
+			json.append(i == 1 ? "" : ",").append("{'a':").append(i).append('}');
+		ObjectTreeNavigator navigator = makeNavigatorFor(json.append("]}").toString());
+
+		assertEquals(500500, navigator.getStream("items").parallel().mapToInt(element -> element.getInt("a")).sum());
+		assertEquals(1000, navigator.getStream(CompiledPath.compile("items")).parallel().filter(ObjectTreeNavigator::isObject).count());
+		assertEquals(0, navigator.getStream("missing").parallel().count());
+	}
+
+	/**
+	 * @param jsonText the JSON as a string. Single quotes will be replaced with double quotes to make the JSON literal more readable in the code.
+	 * @return a {@link ObjectTreeNavigator} for the give JSON as a string.
+	 */
+	private ObjectTreeNavigator makeNavigatorFor(String jsonText) {
+		return new GsonObjectTreeNavigator(PARSER.parse(jsonText.replace('\'', '"')));
+	}
+}
@@ -0,0 +1,42 @@
+package prototype;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+/**
+ * Test the {@link PathBatch} class
+ */
+public class PathBatchTest {
+	private static final JsonParser PARSER = new JsonParser();
+
+	/** Verifies a batch of paths finds the same values as each path on its own */
+	@Test
+	public void testPathBatch() {
+		ObjectTreeNavigator navigator = makeNavigatorFor("{'title':'Something','errors':[{'code':10,'description':'An error'}, {'code':30,'description':'Other error'}], 'reviews':null}");
+		PathBatch batch = PathBatch.of("errors[1].description", "errors[0].code", "errors.1.code", "title", "reviews[4].name", "errors[5].code", "missing.name", "errors[0]");
+
+		PathBatch.Values values = navigator.getValues(batch);
+
+		assertEquals(batch.size(), values.size());
+		for (int path = 0; path < batch.size(); path++)
+			assertEquals(batch.getPath(path), navigator.getString(batch.getPath(path), "default"), values.getString(path, "default"));
+		assertEquals(30, values.getInt(2));
+		assertEquals("An error", values.getNavigator(7).getString("description"));
+	}
+
+	/** Verifies a primitive value in the middle of a path of a batch is found as for a single path */
+	@Test(expected = IllegalArgumentException.class)
+	public void testPathBatchPrimitiveInPath() {
+		makeNavigatorFor("{'title':'Something','errors':[]}").getValues(PathBatch.of("errors", "title.name"));
+	}
+
+	/**
+	 * @param jsonText the JSON as a string. Single quotes will be replaced with double quotes to make the JSON literal more readable in the code.
+	 * @return a {@link ObjectTreeNavigator} for the give JSON as a string.
+	 */
+	private ObjectTreeNavigator makeNavigatorFor(String jsonText) {
+		return new GsonObjectTreeNavigator(PARSER.parse(jsonText.replace('\'', '"')));
+	}
+}
@@ -0,0 +1,73 @@
+package prototype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+/**
+ * Test the {@link StreamingObjectTreeNavigator} class
+ */
+public class StreamingObjectTreeNavigatorTest {
+	private static final JsonParser PARSER = new JsonParser();
+
+	/** Verifies the streaming navigator finds the same values as the tree one for the declared paths */
+	@Test
+	public void testStreamingNavigator() throws IOException {
+		assertSameValues("{'title':'Something','errors':[{'code':10,'description':'An error'}, {'code':30,'description':'Other error'}], 'reviews':null}",
+				"title", "errors[1].description", "errors.0.code", "errors[2].code", "reviews[4].name", "missing", "errors");
+		assertSameValues("[10,20,30,'aa', 40]", "[0]", "[3]", "[5]", "");
+		assertSameValues("[{'a':10,'name':'Charly'},{'a':20,'name':'Fernando'},{'a':30,'name':'Richard'}]", "......[1]....name...", "[2].a");
+	}
+
+	/** Verifies the elements in the declared paths can be navigated and iterated */
+	@Test
+	public void testStreamingSubNavigator() throws IOException {
+		ObjectTreeNavigator navigator = StreamingObjectTreeNavigator.read(new StringReader(
+				"{'total':40, 'items':[{'a':10,'name':'Charly'},{'a':20,'name':'Fernando'}], 'other':{'big':[1,2,3]}}"), Arrays.asList("items", "total"));
+
+		Iterator<ObjectTreeNavigator> iterator = navigator.getIterable("items").iterator();
+		assertEquals("Charly", iterator.next().getString("name"));
+		assertEquals("Fernando", iterator.next().getString("name"));
+		assertFalse(iterator.hasNext());
+		assertEquals("Fernando", navigator.getNavigator("items").getString("[1].name"));
+		assertEquals(40, navigator.getInt(CompiledPath.compile("total")));
+	}
+
+	/** Verifies the paths that were not declared cannot be followed, their elements were not read */
+	@Test(expected = IllegalArgumentException.class)
+	public void testStreamingUndeclaredPath() throws IOException {
+		ObjectTreeNavigator navigator = StreamingObjectTreeNavigator.read(new StringReader("{'title':'Something','other':'Nothing'}"), Arrays.asList("title"));
+		navigator.getString("other");
+	}
+
+	/** Verifies a primitive value in the middle of a declared path is found as in the tree */
+	@Test(expected = IllegalArgumentException.class)
+	public void testStreamingPrimitiveInPath() throws IOException {
+		ObjectTreeNavigator navigator = StreamingObjectTreeNavigator.read(new StringReader("{'title':'Something'}"), Arrays.asList("title.name"));
+		navigator.getString("title.name");
+	}
+
+	/** Checks the streaming navigator returns the same as the tree one for each path */
+	private void assertSameValues(String jsonText, String... fieldPaths) throws IOException {
+		ObjectTreeNavigator tree = makeNavigatorFor(jsonText);
+		ObjectTreeNavigator streaming = StreamingObjectTreeNavigator.read(new StringReader(jsonText.replace('\'', '"')), Arrays.asList(fieldPaths));
+
+		for (String fieldPath : fieldPaths)
+			assertEquals(fieldPath, tree.getString(fieldPath, "default"), streaming.getString(fieldPath, "default"));
+	}
+
+	/**
+	 * @param jsonText the JSON as a string. Single quotes will be replaced with double quotes to make the JSON literal more readable in the code.
+	 * @return a {@link ObjectTreeNavigator} for the give JSON as a string.
+	 */
+	private ObjectTreeNavigator makeNavigatorFor(String jsonText) {
+		return new GsonObjectTreeNavigator(PARSER.parse(jsonText.replace('\'', '"')));
+	}
+}